@@ -0,0 +1,78 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+/**
+ * Minimal Spring context shared by the benchmarks: the vCloud components are wired with their default settings,
+ * without database nor the ligoj services.
+ */
+final class VCloudBenchmarkContext implements AutoCloseable {
+
+	private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+	/**
+	 * Start the context.
+	 *
+	 * @param properties The settings overriding the default ones.
+	 */
+	VCloudBenchmarkContext(final Map<String, Object> properties) {
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+		context.register(PropertySourcesPlaceholderConfigurer.class, VCloudSingleFlight.class, VCloudMetrics.class,
+				VCloudCircuitBreaker.class, VCloudRateLimiter.class, VCloudConnectionManager.class,
+				VCloudSessionManager.class, VCloudVmCache.class, VCloudInventory.class);
+		context.refresh();
+	}
+
+	/**
+	 * Return the component of the given type.
+	 *
+	 * @param type The component type.
+	 * @param <T>  The component type.
+	 * @return The component of this context.
+	 */
+	<T> T getBean(final Class<T> type) {
+		return context.getBean(type);
+	}
+
+	/**
+	 * Return a new resource wired with the components of this context and the settings. The other collaborators, such
+	 * as the repositories, are left <code>null</code>.
+	 *
+	 * @return The initialized resource.
+	 */
+	VCloudPluginResource newResource() {
+		final var resource = new VCloudPluginResource();
+		final var factory = context.getBeanFactory();
+		ReflectionUtils.doWithLocalFields(VCloudPluginResource.class, f -> {
+			if (Modifier.isStatic(f.getModifiers())) {
+				return;
+			}
+			ReflectionUtils.makeAccessible(f);
+			final var value = f.getAnnotation(Value.class);
+			if (value != null) {
+				f.set(resource, factory.getTypeConverter()
+						.convertIfNecessary(factory.resolveEmbeddedValue(value.value()), f.getType()));
+			} else if (f.isAnnotationPresent(Autowired.class)) {
+				f.set(resource, context.getBeanProvider(f.getType()).getIfAvailable());
+			}
+		});
+		resource.afterPropertiesSet();
+		return resource;
+	}
+
+	@Override
+	public void close() {
+		context.close();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.ligoj.app.plugin.vm.model.VmOperation;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the failsafe operation lookup, for all the mapped status and operation combinations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VCloudOperationBenchmark {
+
+	/**
+	 * The status of the mapping table.
+	 */
+	private static final VmStatus[] STATUSES = { VmStatus.POWERED_OFF, VmStatus.POWERED_ON, VmStatus.SUSPENDED };
+
+	private VCloudBenchmarkContext context;
+
+	private VCloudPluginResource resource;
+
+	@Setup
+	public void setup() {
+		context = new VCloudBenchmarkContext(Map.of());
+		resource = context.newResource();
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public void failSafeOperation(final Blackhole blackhole) {
+		for (final var status : STATUSES) {
+			for (final var operation : VmOperation.values()) {
+				blackhole.consume(resource.failSafeOperation(status, operation));
+			}
+		}
+	}
+}
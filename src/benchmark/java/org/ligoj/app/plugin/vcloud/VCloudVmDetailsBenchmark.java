@@ -0,0 +1,102 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hc.core5.http.HttpStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of the VM details against an in-process vCloud stand-in, and of the session cache. The
+ * components are wired with the default settings, see {@link VCloudBenchmarkContext}. The VM cache is disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VCloudVmDetailsBenchmark {
+
+	private WireMockServer server;
+
+	private VCloudBenchmarkContext context;
+
+	private VCloudSessionManager sessionManager;
+
+	private VCloudPluginResource resource;
+
+	private final Map<String, String> parameters = new HashMap<>();
+
+	private Pair<String, String> session;
+
+	@Setup
+	public void setup() throws IOException {
+		server = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+		server.stubFor(post(urlPathEqualTo("/api/sessions"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withHeader("x-vcloud-authorization", "token")));
+		server.stubFor(get(urlPathEqualTo("/api/query")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredon.xml").getInputStream(),
+						StandardCharsets.UTF_8))));
+		server.start();
+
+		parameters.put(VCloudPluginResource.PARAMETER_API, "http://localhost:" + server.port() + "/api");
+		parameters.put(VCloudPluginResource.PARAMETER_USER, "user");
+		parameters.put(VCloudPluginResource.PARAMETER_PASSWORD, "secret");
+		parameters.put(VCloudPluginResource.PARAMETER_ORGANIZATION, "org");
+		parameters.put(VCloudPluginResource.PARAMETER_VM, "75aa69b4-8cff-40cd-9338-000000000000");
+		context = new VCloudBenchmarkContext(Map.of("saas.service-vm-vcloud-vm-cache-ttl", "0"));
+		sessionManager = context.getBean(VCloudSessionManager.class);
+		resource = context.newResource();
+		session = Pair.of(parameters.get(VCloudPluginResource.PARAMETER_API) + "/sessions", "dXNlckBvcmc6c2VjcmV0");
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+		server.stop();
+	}
+
+	/**
+	 * Full VM details: session from the cache, query and parsing.
+	 */
+	@Benchmark
+	public VCloudVm getVmDetails() {
+		return resource.getVmDetails(parameters);
+	}
+
+	/**
+	 * Session token served from the cache.
+	 */
+	@Benchmark
+	public String getToken() {
+		return sessionManager.getToken(session.getLeft(), session.getRight());
+	}
+}
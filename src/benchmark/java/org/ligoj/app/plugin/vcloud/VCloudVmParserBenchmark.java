@@ -0,0 +1,61 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the <code>QueryResultRecords</code> parsing: streaming parser against the previous DOM based one, and
+ * against the JSON query records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VCloudVmParserBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	private int records;
+
+	private byte[] xml;
+
+	private byte[] json;
+
+	@Setup
+	public void setup() {
+		xml = VCloudVmParserTest.newQueryResult(records);
+		json = VCloudVmJsonParserTest.newQueryResult(records);
+	}
+
+	@Benchmark
+	public List<VCloudVm> stax() throws Exception {
+		return VCloudVmParser.toVms(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public List<VCloudVm> dom() throws Exception {
+		return VCloudVmParserTest.toVmsDom(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public List<VCloudVm> json() throws Exception {
+		return VCloudVmJsonParser.toVms(new ByteArrayInputStream(json));
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.ligoj.app.plugin.vm.model.VmStatus;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the compact VM store: build time and bean views, against the list of {@link VCloudVm} beans. The
+ * retained heap of both layouts, measured with JOL, is reported by the {@link #footprint(Footprint)} counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class VCloudVmStoreBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	private int records;
+
+	private List<VCloudVm> vms;
+
+	private VCloudVmStore store;
+
+	/**
+	 * Retained heap of both layouts, reported by JMH as secondary results.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		/**
+		 * Retained bytes by VM of the list of beans.
+		 */
+		public long beanBytes;
+
+		/**
+		 * Retained bytes by VM of the store.
+		 */
+		public long storeBytes;
+
+		/**
+		 * Amount of distinct values in the dictionary of the store.
+		 */
+		public long dictionaryValues;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			beanBytes = 0;
+			storeBytes = 0;
+			dictionaryValues = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		vms = newVms(records);
+		store = new VCloudVmStore(vms);
+	}
+
+	/**
+	 * Build the VMs as the parsers do: each record holds its own copies of the repeated values.
+	 */
+	static List<VCloudVm> newVms(final int count) {
+		final var result = new ArrayList<VCloudVm>(count);
+		for (var i = 0; i < count; i++) {
+			final var vm = new VCloudVm();
+			vm.setId("75aa69b4-8cff-40cd-9338-" + String.format("%012d", i));
+			vm.setName("vm-" + i);
+			vm.setOs(new String(i % 4 == 0 ? "Microsoft Windows Server 2019 (64-bit)" : "CentOS 4/5/6/7 (64-bit)"));
+			vm.setStorageProfileName(new String(i % 2 == 0 ? "High Performances" : "Standard"));
+			vm.setStatus(i % 3 == 0 ? VmStatus.POWERED_OFF : VmStatus.POWERED_ON);
+			vm.setCpu(i % 8 + 1);
+			vm.setRam(4096);
+			vm.setDeployed(i % 3 != 0);
+			vm.setVApp("vApp_" + i / 10);
+			vm.setVAppId("48b3379b-d130-439d-9559-" + String.format("%012d", i / 10));
+			result.add(vm);
+		}
+		return result;
+	}
+
+	/**
+	 * Measure the retained heap of both layouts with JOL. The time of this benchmark is not relevant.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	public void footprint(final Footprint footprint) {
+		footprint.beanBytes = GraphLayout.parseInstance(vms).totalSize() / records;
+		footprint.storeBytes = GraphLayout.parseInstance(store).totalSize() / records;
+		footprint.dictionaryValues = store.getDictionarySize();
+	}
+
+	@Benchmark
+	public VCloudVmStore build() {
+		return new VCloudVmStore(vms);
+	}
+
+	@Benchmark
+	public long views() {
+		return store.stream().filter(VCloudVm::isDeployed).count();
+	}
+
+	@Benchmark
+	public long beans() {
+		return vms.stream().filter(VCloudVm::isDeployed).count();
+	}
+}
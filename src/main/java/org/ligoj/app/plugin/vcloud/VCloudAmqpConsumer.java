@@ -0,0 +1,55 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import com.rabbitmq.client.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * AMQP consumer of the vCloud notifications. The AMQP client types are only referenced by this class, so the AMQP
+ * client is only loaded, and only required at runtime, when the notifications are enabled.
+ */
+@Slf4j
+final class VCloudAmqpConsumer {
+
+	private VCloudAmqpConsumer() {
+		// Factory only
+	}
+
+	/**
+	 * Open a connection and consume the messages of an exclusive queue bound to the exchange. The connection is
+	 * automatically recovered once opened, and is closed when the consumer cannot be set up.
+	 *
+	 * @param uri      The AMQP broker URI.
+	 * @param exchange The exchange where vCloud publishes the notifications.
+	 * @param routing  The routing key of the listened notifications.
+	 * @param handler  The handler of the message bodies.
+	 * @return The opened connection, to close to stop the consumption.
+	 * @throws Exception When the broker is not available or the consumer cannot be set up.
+	 */
+	static AutoCloseable open(final String uri, final String exchange, final String routing,
+			final Consumer<byte[]> handler) throws Exception {
+		final var factory = new ConnectionFactory();
+		factory.setUri(uri);
+		factory.setAutomaticRecoveryEnabled(true);
+		final var connection = factory.newConnection("ligoj-vm-vcloud");
+		try {
+			final var channel = connection.createChannel();
+
+			// Exclusive queue, deleted with the connection
+			final var queue = channel.queueDeclare().getQueue();
+			channel.queueBind(queue, exchange, routing);
+			channel.basicConsume(queue, true, (tag, delivery) -> handler.accept(delivery.getBody()),
+					tag -> log.info("vCloud notification consumer {} cancelled", tag));
+		} catch (final IOException | RuntimeException e) {
+			connection.abort();
+			throw e;
+		}
+		log.info("Listening vCloud notifications of exchange {} on {}", exchange, connection.getAddress());
+		return connection;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking HTTP client shared by the asynchronous vCloud requests. A few I/O threads multiplex all the in-flight
+ * requests, so no thread waits for the director round trip. The client is started on the first request.
+ */
+@Component
+@Slf4j
+public class VCloudAsyncClient implements DisposableBean {
+
+	/**
+	 * Amount of I/O threads.
+	 */
+	@Value("${saas.service-vm-vcloud-async-io-threads:2}")
+	private int ioThreads;
+
+	/**
+	 * Maximal amount of pooled connections per endpoint.
+	 */
+	@Value("${saas.service-vm-vcloud-async-max-per-route:50}")
+	private int maxPerRoute;
+
+	@Value("${saas.service-vm-vcloud-pool-connect-timeout:5000}")
+	private long connectTimeout;
+
+	@Value("${saas.service-vm-vcloud-pool-timeout:30000}")
+	private long responseTimeout;
+
+	@Value("${saas.service-vm-vcloud-pool-keep-alive:60000}")
+	private long keepAlive;
+
+	@Value("${saas.service-vm-vcloud-pool-ttl:0}")
+	private long ttl;
+
+	private CloseableHttpAsyncClient client;
+
+	/**
+	 * Return the started client.
+	 */
+	private synchronized CloseableHttpAsyncClient getClient() {
+		if (client == null) {
+			log.info("Start the asynchronous vCloud HTTP client with {} I/O threads", ioThreads);
+			final var manager = PoolingAsyncClientConnectionManagerBuilder.create()
+					.setTlsStrategy(ClientTlsStrategyBuilder.create()
+							.setSslContext(VCloudConnectionManager.newSslContext())
+							.setHostnameVerifier(NoopHostnameVerifier.INSTANCE).build())
+					.setMaxConnPerRoute(maxPerRoute).setMaxConnTotal(maxPerRoute * 4)
+					.setDefaultConnectionConfig(ConnectionConfig.custom()
+							.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+							.setTimeToLive(ttl > 0 ? TimeValue.ofMilliseconds(ttl) : null).build())
+					.build();
+			client = HttpAsyncClients.custom().setConnectionManager(manager)
+					.setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreads).build())
+					.setDefaultRequestConfig(RequestConfig.custom()
+							.setResponseTimeout(Timeout.ofMilliseconds(responseTimeout))
+							.setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive)).build())
+					.disableCookieManagement().build();
+			client.start();
+		}
+		return client;
+	}
+
+	/**
+	 * Execute a request without blocking the caller.
+	 *
+	 * @param request The request to execute.
+	 * @return The future response, completed by an I/O thread.
+	 */
+	public CompletableFuture<SimpleHttpResponse> execute(final SimpleHttpRequest request) {
+		final var future = new CompletableFuture<SimpleHttpResponse>();
+		getClient().execute(request, new FutureCallback<>() {
+			@Override
+			public void completed(final SimpleHttpResponse response) {
+				future.complete(response);
+			}
+
+			@Override
+			public void failed(final Exception e) {
+				future.completeExceptionally(e);
+			}
+
+			@Override
+			public void cancelled() {
+				future.cancel(false);
+			}
+		});
+		return future;
+	}
+
+	@Override
+	public synchronized void destroy() {
+		if (client != null) {
+			client.close(CloseMode.GRACEFUL);
+			client = null;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Statistics of an in-memory cache of this plug-in.
+ */
+@Getter
+@AllArgsConstructor
+public class VCloudCacheStatistics {
+
+	/**
+	 * Amount of lookups served from the cache.
+	 */
+	private long hits;
+
+	/**
+	 * Amount of lookups not served from the cache: absent or expired entry.
+	 */
+	private long misses;
+
+	/**
+	 * Amount of entries evicted to respect the maximal size.
+	 */
+	private long evictions;
+
+	/**
+	 * Current amount of entries.
+	 */
+	private int size;
+}
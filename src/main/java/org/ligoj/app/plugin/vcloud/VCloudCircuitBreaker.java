@@ -0,0 +1,177 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.HttpStatus;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Circuit breaker by vCloud endpoint. After consecutive failures without response, the circuit is opened and the
+ * requests to this endpoint are rejected immediately instead of waiting for the connection timeout. Once the open
+ * delay has elapsed, a single trial request is allowed: its success closes the circuit, its failure opens it again.
+ */
+@Component
+@Slf4j
+public class VCloudCircuitBreaker {
+
+	/**
+	 * Circuit states.
+	 */
+	public enum State {
+		/**
+		 * Requests are allowed.
+		 */
+		CLOSED,
+
+		/**
+		 * Requests are rejected.
+		 */
+		OPEN,
+
+		/**
+		 * A single trial request is allowed.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Amount of consecutive failures opening the circuit. <code>0</code> disables the circuit breaker.
+	 */
+	@Value("${saas.service-vm-vcloud-circuit-failures:5}")
+	private int threshold;
+
+	/**
+	 * Delay in milliseconds during which an open circuit rejects the requests before a trial request.
+	 */
+	@Value("${saas.service-vm-vcloud-circuit-open:30000}")
+	private long openDelay;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	/**
+	 * Circuits by endpoint.
+	 */
+	private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+	/**
+	 * Mutable circuit of an endpoint. Guarded by its own monitor.
+	 */
+	private static class Circuit {
+		private State state = State.CLOSED;
+		private int failures;
+		private long opened;
+		private boolean trial;
+	}
+
+	/**
+	 * Indicate the given HTTP status denotes an unavailable endpoint.
+	 *
+	 * @param status The HTTP status. <code>0</code> when there is no response.
+	 * @return <code>true</code> when the endpoint or its gateway did not answer.
+	 */
+	static boolean isFailure(final int status) {
+		return status == 0 || status == HttpStatus.SC_BAD_GATEWAY || status == HttpStatus.SC_GATEWAY_TIMEOUT;
+	}
+
+	/**
+	 * Check a request to the given URL is allowed. In the half-open state, the caller becomes the trial request and
+	 * must report its result with {@link #record(String, int)}.
+	 *
+	 * @param url Any URL of the vCloud endpoint.
+	 */
+	public void acquire(final String url) {
+		if (threshold <= 0) {
+			return;
+		}
+		final var endpoint = VCloudConnectionManager.toEndpoint(url);
+		final var circuit = circuits.computeIfAbsent(endpoint, e -> new Circuit());
+		synchronized (circuit) {
+			if (circuit.state == State.OPEN && System.currentTimeMillis() - circuit.opened >= openDelay) {
+				transition(endpoint, circuit, State.HALF_OPEN);
+			}
+			if (circuit.state == State.OPEN || circuit.state == State.HALF_OPEN && circuit.trial) {
+				// Fail fast
+				throw new ValidationJsonException(VCloudPluginResource.PARAMETER_API, "vcloud-unavailable", endpoint);
+			}
+			circuit.trial = circuit.state == State.HALF_OPEN;
+		}
+	}
+
+	/**
+	 * Record the result of an allowed request.
+	 *
+	 * @param url    The request URL.
+	 * @param status The HTTP status. <code>0</code> when there is no response.
+	 */
+	public void record(final String url, final int status) {
+		if (threshold <= 0) {
+			return;
+		}
+		final var endpoint = VCloudConnectionManager.toEndpoint(url);
+		final var circuit = circuits.get(endpoint);
+		if (circuit == null) {
+			return;
+		}
+		synchronized (circuit) {
+			circuit.trial = false;
+			if (!isFailure(status)) {
+				circuit.failures = 0;
+				if (circuit.state != State.CLOSED) {
+					transition(endpoint, circuit, State.CLOSED);
+				}
+				return;
+			}
+			circuit.failures++;
+			if (circuit.state == State.HALF_OPEN || circuit.state == State.CLOSED && circuit.failures >= threshold) {
+				circuit.opened = System.currentTimeMillis();
+				transition(endpoint, circuit, State.OPEN);
+			}
+		}
+	}
+
+	/**
+	 * Change the state of a circuit.
+	 */
+	private void transition(final String endpoint, final Circuit circuit, final State state) {
+		if (state == State.OPEN) {
+			log.warn("vCloud endpoint {} is not available after {} failures, reject the requests during {}ms",
+					endpoint, circuit.failures, openDelay);
+		} else {
+			log.info("vCloud endpoint {} circuit is {}", endpoint, state);
+		}
+		circuit.state = state;
+		metrics.recordCircuit(endpoint, state.name());
+	}
+
+	/**
+	 * Return the circuit state of an endpoint.
+	 *
+	 * @param url Any URL of the vCloud endpoint.
+	 * @return The circuit state.
+	 */
+	public State getState(final String url) {
+		final var circuit = circuits.get(VCloudConnectionManager.toEndpoint(url));
+		if (circuit == null) {
+			return State.CLOSED;
+		}
+		synchronized (circuit) {
+			return circuit.state;
+		}
+	}
+
+	/**
+	 * Close all circuits.
+	 */
+	public void clear() {
+		circuits.clear();
+	}
+}
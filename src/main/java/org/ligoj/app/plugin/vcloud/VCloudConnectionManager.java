@@ -0,0 +1,143 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.client5.http.ssl.TrustAllStrategy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pooled and keep-alive HTTP clients, one per vCloud endpoint. The clients are shared by all
+ * {@link VCloudCurlProcessor} targeting the same endpoint, so the TCP and TLS handshakes are paid once per pooled
+ * connection instead of once per request.
+ */
+@Component
+@Slf4j
+public class VCloudConnectionManager implements DisposableBean {
+
+	/**
+	 * Maximal amount of pooled connections per route, and per endpoint.
+	 */
+	@Value("${saas.service-vm-vcloud-pool-max-per-route:20}")
+	private int maxPerRoute;
+
+	/**
+	 * Duration in milliseconds after which an idle connection is evicted from the pool.
+	 */
+	@Value("${saas.service-vm-vcloud-pool-idle:30000}")
+	private long idle;
+
+	/**
+	 * Keep-alive duration in milliseconds of a pooled connection when the server does not specify it. Once elapsed
+	 * without being reused, the connection is evicted.
+	 */
+	@Value("${saas.service-vm-vcloud-pool-keep-alive:60000}")
+	private long keepAlive;
+
+	/**
+	 * Total lifetime in milliseconds of a pooled connection, even when reused. <code>0</code> for an unlimited
+	 * lifetime.
+	 */
+	@Value("${saas.service-vm-vcloud-pool-ttl:0}")
+	private long ttl;
+
+	/**
+	 * Connection timeout in milliseconds.
+	 */
+	@Value("${saas.service-vm-vcloud-pool-connect-timeout:5000}")
+	private long connectTimeout;
+
+	/**
+	 * Default response timeout in milliseconds, when the request does not specify it.
+	 */
+	@Value("${saas.service-vm-vcloud-pool-timeout:30000}")
+	private long responseTimeout;
+
+	/**
+	 * Pooled clients by endpoint.
+	 */
+	private final Map<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+	/**
+	 * Return the pooled client of the endpoint of the given URL.
+	 *
+	 * @param url Any URL of the vCloud endpoint, usually the API URL.
+	 * @return The pooled client shared by all requests to this endpoint. Must not be closed by the caller.
+	 */
+	public CloseableHttpClient getClient(final String url) {
+		return clients.computeIfAbsent(toEndpoint(url), this::newClient);
+	}
+
+	/**
+	 * Return the endpoint key of the given URL: scheme, host and port.
+	 *
+	 * @param url Any URL of the vCloud endpoint.
+	 * @return The endpoint key.
+	 */
+	static String toEndpoint(final String url) {
+		final var uri = URI.create(url);
+		return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+	}
+
+	/**
+	 * Build a new pooled client for the given endpoint.
+	 */
+	private CloseableHttpClient newClient(final String endpoint) {
+		log.info("Create a pooled HTTP client for vCloud endpoint {} with {} connections", endpoint, maxPerRoute);
+		final var manager = PoolingHttpClientConnectionManagerBuilder.create()
+				.setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create().setSslContext(newSslContext())
+						.setHostnameVerifier(NoopHostnameVerifier.INSTANCE).build())
+				.setMaxConnPerRoute(maxPerRoute).setMaxConnTotal(maxPerRoute)
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+						.setTimeToLive(ttl > 0 ? TimeValue.ofMilliseconds(ttl) : null).build())
+				.build();
+
+		// The default keep-alive strategy uses the "Keep-Alive" header of the server, or this default
+		return HttpClients.custom().setConnectionManager(manager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setResponseTimeout(Timeout.ofMilliseconds(responseTimeout))
+						.setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive)).build())
+				.evictIdleConnections(TimeValue.ofMilliseconds(idle)).evictExpiredConnections()
+				.disableCookieManagement().build();
+	}
+
+	/**
+	 * Return a SSL context accepting any certificate, as {@link org.ligoj.bootstrap.core.curl.CurlProcessor} does.
+	 *
+	 * @return A SSL context accepting any certificate.
+	 */
+	static SSLContext newSslContext() {
+		try {
+			return SSLContexts.custom().loadTrustMaterial(TrustAllStrategy.INSTANCE).build();
+		} catch (final GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to build the SSL context", e);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		clients.values().forEach(c -> c.close(CloseMode.GRACEFUL));
+		clients.clear();
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded cache of the latest console screenshots by VM, and of their downscaled thumbnails. The images are scoped by
+ * the credentials reading them, and are shared byte arrays, written as is to the responses. The least recently used images are evicted when the cache exceeds its
+ * size.
+ */
+@Component
+@Slf4j
+public class VCloudConsoleCache {
+
+	/**
+	 * Maximal width of a thumbnail.
+	 */
+	static final int MAX_WIDTH = 2048;
+
+	/**
+	 * Time to live in milliseconds of a screenshot.
+	 */
+	@Getter
+	@Value("${saas.service-vm-vcloud-console-ttl:5000}")
+	private long ttl;
+
+	/**
+	 * Maximal amount of cached bytes.
+	 */
+	@Value("${saas.service-vm-vcloud-console-cache-size:16777216}")
+	private long maxSize;
+
+	/**
+	 * Images by API, VM and width, in access order. Guarded by itself.
+	 */
+	private final LinkedHashMap<String, Frame> frames = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Amount of cached bytes. Guarded by {@link #frames}.
+	 */
+	private long size;
+
+	/**
+	 * An immutable PNG image.
+	 *
+	 * @param data    The image bytes, shared and never modified.
+	 * @param etag    The entity tag of the image, without quotes.
+	 * @param fetched The screenshot timestamp.
+	 */
+	public record Frame(byte[] data, String etag, long fetched) {
+
+		/**
+		 * Write the image to the given stream.
+		 *
+		 * @param output The target stream. Not closed.
+		 * @throws IOException When the image cannot be written.
+		 */
+		public void write(final OutputStream output) throws IOException {
+			output.write(data);
+			output.flush();
+		}
+
+		/**
+		 * Return the image size.
+		 *
+		 * @return The amount of bytes.
+		 */
+		public int size() {
+			return data.length;
+		}
+
+		/**
+		 * Indicate the client already has this image, with the weak comparison of the entity tags.
+		 *
+		 * @param ifNoneMatch The "If-None-Match" header: <code>*</code> or comma separated entity tags, optionally
+		 *                    weak. May be <code>null</code>.
+		 * @return <code>true</code> when one of the entity tags is the one of this image.
+		 */
+		public boolean matches(final String ifNoneMatch) {
+			if (ifNoneMatch == null) {
+				return false;
+			}
+			for (final var tag : ifNoneMatch.split(",")) {
+				final var value = StringUtils.removeStart(tag.trim(), "W/");
+				if ("*".equals(value) || value.equals("\"" + etag + "\"")) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private String toKey(final String scope, final String vm, final int width) {
+		return scope + "##" + vm + "##" + width;
+	}
+
+	/**
+	 * Return a valid cached image.
+	 *
+	 * @param scope The vCloud API URL and the hash of the credentials reading the image.
+	 * @param vm    The VM identifier.
+	 * @param width The thumbnail width. <code>0</code> for the screenshot.
+	 * @return The cached image or <code>null</code> when not cached or expired.
+	 */
+	public Frame get(final String scope, final String vm, final int width) {
+		synchronized (frames) {
+			final var frame = frames.get(toKey(scope, vm, width));
+			if (frame == null || System.currentTimeMillis() - frame.fetched() > ttl) {
+				return null;
+			}
+			return frame;
+		}
+	}
+
+	/**
+	 * Cache a new screenshot. The previous thumbnails of this VM are evicted.
+	 *
+	 * @param scope The vCloud API URL and the hash of the credentials reading the image.
+	 * @param vm    The VM identifier.
+	 * @param image The PNG screenshot, owned by this cache and no more modified.
+	 * @return The cached screenshot.
+	 */
+	public Frame put(final String scope, final String vm, final byte[] image) {
+		final var frame = newFrame(image, System.currentTimeMillis());
+		synchronized (frames) {
+			final var prefix = scope + "##" + vm + "##";
+			frames.entrySet().removeIf(e -> {
+				if (e.getKey().startsWith(prefix)) {
+					size -= e.getValue().size();
+					return true;
+				}
+				return false;
+			});
+			put(toKey(scope, vm, 0), frame);
+		}
+		return frame;
+	}
+
+	/**
+	 * Return the thumbnail of a screenshot, transcoded and cached when not yet cached.
+	 *
+	 * @param scope  The vCloud API URL and the hash of the credentials reading the image.
+	 * @param vm     The VM identifier.
+	 * @param screen The screenshot.
+	 * @param width  The requested width. The screenshot is returned when not smaller.
+	 * @return The thumbnail.
+	 */
+	public Frame getThumbnail(final String scope, final String vm, final Frame screen, final int width) {
+		final var cached = get(scope, vm, width);
+		if (cached != null && cached.fetched() == screen.fetched()) {
+			return cached;
+		}
+		final var thumbnail = toThumbnail(screen, Math.min(width, MAX_WIDTH));
+		if (thumbnail != screen) {
+			synchronized (frames) {
+				put(toKey(scope, vm, width), thumbnail);
+			}
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * Return a downscaled copy of the given screenshot.
+	 *
+	 * @param screen The screenshot.
+	 * @param width  The target width.
+	 * @return The downscaled image. The screenshot itself when it is not wider, or cannot be decoded.
+	 */
+	Frame toThumbnail(final Frame screen, final int width) {
+		try {
+			final var image = ImageIO.read(new ByteArrayInputStream(screen.data()));
+			if (image == null || image.getWidth() <= width) {
+				return screen;
+			}
+			final var height = Math.max(1, image.getHeight() * width / image.getWidth());
+			final var scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			final var graphics = scaled.createGraphics();
+			try {
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				graphics.drawImage(image, 0, 0, width, height, null);
+			} finally {
+				graphics.dispose();
+			}
+			final var output = new ByteArrayOutputStream();
+			ImageIO.write(scaled, "png", output);
+			return newFrame(output.toByteArray(), screen.fetched());
+		} catch (final IOException e) {
+			log.info("Unable to transcode the console screenshot: {}", e.getMessage());
+			return screen;
+		}
+	}
+
+	/**
+	 * Wrap an image with its entity tag.
+	 */
+	private Frame newFrame(final byte[] image, final long fetched) {
+		return new Frame(image, DigestUtils.sha256Hex(image).substring(0, 32), fetched);
+	}
+
+	/**
+	 * Add an image and evict the least recently used ones beyond the maximal size. Must hold the lock.
+	 */
+	private void put(final String key, final Frame frame) {
+		final var previous = frames.put(key, frame);
+		size += frame.size() - (previous == null ? 0 : previous.size());
+		final var iterator = frames.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			final var eldest = iterator.next();
+			if (eldest.getValue() != frame) {
+				size -= eldest.getValue().size();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Return the amount of cached bytes.
+	 *
+	 * @return The amount of cached bytes.
+	 */
+	public long size() {
+		synchronized (frames) {
+			return size;
+		}
+	}
+
+	/**
+	 * Remove all images.
+	 */
+	public void clear() {
+		synchronized (frames) {
+			frames.clear();
+			size = 0;
+		}
+	}
+}
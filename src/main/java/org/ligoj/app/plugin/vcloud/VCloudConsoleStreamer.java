@@ -0,0 +1,291 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Live console streams. A single poller by VM fetches the screen at a fixed rate while there is at least one viewer,
+ * and fans the changed screenshots out to all the viewers as a <code>multipart/x-mixed-replace</code> stream of PNG
+ * images. The screenshots with the same entity tag than the previous one are not sent again, but the last one is sent
+ * again at the heartbeat rate, so a disconnected client is detected without waiting for the end of the stream.
+ */
+@Component
+@Slf4j
+public class VCloudConsoleStreamer implements DisposableBean {
+
+	/**
+	 * Boundary of the parts of the stream.
+	 */
+	static final String BOUNDARY = "vcloud-console";
+
+	/**
+	 * Media type of the stream.
+	 */
+	public static final String MEDIA_TYPE = "multipart/x-mixed-replace;boundary=" + BOUNDARY;
+
+	private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Delay in milliseconds between two screenshots of a VM.
+	 */
+	@Value("${saas.service-vm-vcloud-console-interval:1000}")
+	private long interval;
+
+	/**
+	 * Maximal duration in milliseconds of a stream. The client reconnects to watch longer.
+	 */
+	@Value("${saas.service-vm-vcloud-console-duration:300000}")
+	private long duration;
+
+	/**
+	 * Maximal delay in milliseconds without writing to a stream. Beyond, the last screenshot is sent again to detect
+	 * the disconnected clients.
+	 */
+	@Value("${saas.service-vm-vcloud-console-heartbeat:10000}")
+	private long heartbeat;
+
+	/**
+	 * Pollers by VM.
+	 */
+	private final Map<String, Poller> pollers = new ConcurrentHashMap<>();
+
+	/**
+	 * Amount of screenshots not sent because unchanged.
+	 */
+	private final LongAdder skipped = new LongAdder();
+
+	/**
+	 * The latest screenshot of a poller.
+	 *
+	 * @param frame    The screenshot.
+	 * @param sequence The sequence of this screenshot, starting at <code>1</code>.
+	 */
+	private record Latest(VCloudConsoleCache.Frame frame, long sequence) {
+	}
+
+	/**
+	 * Shared poller of a VM screen.
+	 */
+	private class Poller implements Runnable {
+
+		private final String key;
+
+		private final Supplier<VCloudConsoleCache.Frame> loader;
+
+		/**
+		 * Amount of viewers. Only updated by the atomic operations of {@link #pollers}.
+		 */
+		private int viewers;
+
+		/**
+		 * The latest screenshot. Guarded by this poller.
+		 */
+		private Latest latest;
+
+		/**
+		 * Indicates this poller is stopped. Guarded by this poller.
+		 */
+		private boolean stopped;
+
+		private Poller(final String key, final Supplier<VCloudConsoleCache.Frame> loader) {
+			this.key = key;
+			this.loader = loader;
+		}
+
+		@Override
+		public void run() {
+			while (isActive()) {
+				publish(load());
+				try {
+					Thread.sleep(interval);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					pollers.remove(key, this);
+				}
+			}
+			stop();
+		}
+
+		/**
+		 * Return the current screenshot. A failure is logged and does not stop the poller.
+		 */
+		private VCloudConsoleCache.Frame load() {
+			try {
+				return loader.get();
+			} catch (final RuntimeException e) {
+				log.info("Unable to get the console of {}: {}", key, e.getMessage());
+				return null;
+			}
+		}
+
+		/**
+		 * Indicate this poller is still the one of its VM. It is unregistered when there is no more viewer.
+		 */
+		private boolean isActive() {
+			return pollers.computeIfPresent(key, (k, p) -> p == this && viewers == 0 ? null : p) == this;
+		}
+
+		/**
+		 * Publish a new screenshot to the viewers when it differs from the previous one.
+		 */
+		private synchronized void publish(final VCloudConsoleCache.Frame frame) {
+			if (frame == null) {
+				return;
+			}
+			if (latest != null && latest.frame().etag().equals(frame.etag())) {
+				skipped.increment();
+				return;
+			}
+			latest = new Latest(frame, latest == null ? 1 : latest.sequence() + 1);
+			notifyAll();
+		}
+
+		/**
+		 * Stop this poller and release its viewers.
+		 */
+		private synchronized void stop() {
+			stopped = true;
+			notifyAll();
+		}
+
+		/**
+		 * Indicate this poller is stopped.
+		 */
+		private synchronized boolean isStopped() {
+			return stopped;
+		}
+
+		/**
+		 * Wait for a screenshot newer than the given sequence.
+		 *
+		 * @param sequence The sequence of the last screenshot sent to the viewer.
+		 * @param deadline The timestamp the viewer stops waiting.
+		 * @return The newer screenshot, or <code>null</code> when stopped or the deadline is reached.
+		 */
+		private synchronized Latest next(final long sequence, final long deadline) throws InterruptedException {
+			var now = System.currentTimeMillis();
+			while (!stopped && now < deadline && (latest == null || latest.sequence() <= sequence)) {
+				wait(deadline - now);
+				now = System.currentTimeMillis();
+			}
+			return stopped || latest == null || latest.sequence() <= sequence ? null : latest;
+		}
+	}
+
+	/**
+	 * Stream the changed screenshots of a VM until the maximal duration, the client disconnection or the shutdown.
+	 * Without change during the heartbeat delay, the last screenshot is sent again. The stream is ended by the closing
+	 * boundary, except on disconnection.
+	 *
+	 * @param key    The VM key, shared by all the viewers of the same VM.
+	 * @param loader The screenshot loader, used when there is no poller yet for this VM. Returns <code>null</code>
+	 *               when the screenshot is not available.
+	 * @param output The target stream.
+	 * @throws IOException When the client is disconnected.
+	 */
+	public void stream(final String key, final Supplier<VCloudConsoleCache.Frame> loader, final OutputStream output)
+			throws IOException {
+		final var poller = join(key, loader);
+		try {
+			final var deadline = System.currentTimeMillis() + duration;
+			Latest sent = null;
+			while (true) {
+				final var latest = poller.next(sent == null ? 0 : sent.sequence(),
+						Math.min(deadline, System.currentTimeMillis() + heartbeat));
+				if (latest != null) {
+					write(output, latest.frame());
+					sent = latest;
+				} else if (poller.isStopped() || System.currentTimeMillis() >= deadline) {
+					break;
+				} else if (sent == null) {
+					// Heartbeat before the first screenshot, within the ignored preamble
+					output.write(CRLF);
+					output.flush();
+				} else {
+					// Heartbeat, the same screenshot is displayed
+					write(output, sent.frame());
+				}
+			}
+			output.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+			output.flush();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pollers.computeIfPresent(key, (k, p) -> {
+				if (p == poller) {
+					p.viewers--;
+				}
+				return p;
+			});
+		}
+	}
+
+	/**
+	 * Register a viewer and return the poller of its VM, started when new.
+	 */
+	private Poller join(final String key, final Supplier<VCloudConsoleCache.Frame> loader) {
+		return pollers.compute(key, (k, p) -> {
+			if (p == null) {
+				p = new Poller(key, loader);
+				Thread.ofVirtual().name("vcloud-console").start(p);
+			}
+			p.viewers++;
+			return p;
+		});
+	}
+
+	/**
+	 * Write a screenshot as a part of the stream.
+	 */
+	private void write(final OutputStream output, final VCloudConsoleCache.Frame frame) throws IOException {
+		output.write(("--" + BOUNDARY + "\r\nContent-Type: image/png\r\nContent-Length: " + frame.size() + "\r\n\r\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		frame.write(output);
+		output.write(CRLF);
+		output.flush();
+	}
+
+	/**
+	 * Return the amount of VMs being polled.
+	 *
+	 * @return The amount of VMs being polled.
+	 */
+	public int getPollers() {
+		return pollers.size();
+	}
+
+	/**
+	 * Return the amount of screenshots not sent because unchanged.
+	 *
+	 * @return The amount of screenshots not sent because unchanged.
+	 */
+	public long getSkipped() {
+		return skipped.sum();
+	}
+
+	/**
+	 * Stop all pollers and end the streams.
+	 */
+	public void clear() {
+		pollers.values().forEach(Poller::stop);
+		pollers.clear();
+	}
+
+	@Override
+	public void destroy() {
+		clear();
+	}
+}
@@ -3,15 +3,35 @@
  */
 package org.ligoj.app.plugin.vcloud;
 
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.util.Timeout;
 import org.ligoj.bootstrap.core.curl.CurlProcessor;
 import org.ligoj.bootstrap.core.curl.CurlRequest;
+import org.ligoj.bootstrap.core.curl.DefaultHttpResponseCallback;
 import org.ligoj.bootstrap.core.curl.HttpResponseCallback;
 
+import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * vCloud Curl processor.
+ * vCloud Curl processor. When a pooled client is provided, the requests are executed with this shared client instead
+ * of the one owned by this processor.
  */
+@Slf4j
 public class VCloudCurlProcessor extends CurlProcessor {
 
 	/**
@@ -19,18 +39,206 @@ public class VCloudCurlProcessor extends CurlProcessor {
 	 */
 	public static final HttpResponseCallback LOGIN_CALLBACK = new VCloudLoginHttpResponseCallback();
 
+	/**
+	 * Accepted vCloud content type and API version.
+	 */
+	public static final String ACCEPT = "application/*+xml;version=5.1";
+
+	/**
+	 * Callback used by the pooled requests without specific callback.
+	 */
+	private static final HttpResponseCallback DEFAULT_CALLBACK = new DefaultHttpResponseCallback();
+
 	/**
 	 * Token used to authenticate request
 	 */
 	@Setter
 	protected String token;
 
+	/**
+	 * HTTP status of the last response received with the pooled client. <code>0</code> when there is no response.
+	 */
+	@Getter
+	private int status;
+
+	/**
+	 * Optional pooled client shared by all processors of the same endpoint. Not closed by this processor.
+	 */
+	private final CloseableHttpClient client;
+
+	/**
+	 * Optional metrics of the pooled requests.
+	 */
+	private final VCloudMetrics metrics;
+
+	/**
+	 * Optional circuit breaker of the pooled requests.
+	 */
+	private final VCloudCircuitBreaker breaker;
+
+	/**
+	 * Optional rate limiter of the pooled requests.
+	 */
+	private VCloudRateLimiter limiter;
+
+	/**
+	 * Bucket key of the rate limited requests.
+	 */
+	private String rateKey;
+
+	/**
+	 * Processor using its own HTTP client.
+	 */
+	public VCloudCurlProcessor() {
+		this(null);
+	}
+
+	/**
+	 * Processor using a shared pooled HTTP client.
+	 *
+	 * @param client The pooled client. When <code>null</code>, the client owned by this processor is used.
+	 */
+	public VCloudCurlProcessor(final CloseableHttpClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * Processor using a shared pooled HTTP client, and recording the metrics of the pooled requests.
+	 *
+	 * @param client  The pooled client. When <code>null</code>, the client owned by this processor is used.
+	 * @param metrics The metrics of the pooled requests. May be <code>null</code>.
+	 */
+	public VCloudCurlProcessor(final CloseableHttpClient client, final VCloudMetrics metrics) {
+		this(client, metrics, null);
+	}
+
+	/**
+	 * Processor using a shared pooled HTTP client, recording the metrics and guarded by a circuit breaker.
+	 *
+	 * @param client  The pooled client. When <code>null</code>, the client owned by this processor is used.
+	 * @param metrics The metrics of the pooled requests. May be <code>null</code>.
+	 * @param breaker The circuit breaker of the pooled requests. May be <code>null</code>.
+	 */
+	public VCloudCurlProcessor(final CloseableHttpClient client, final VCloudMetrics metrics,
+			final VCloudCircuitBreaker breaker) {
+		this.client = client;
+		this.metrics = metrics;
+		this.breaker = breaker;
+	}
+
 	@Override
 	protected boolean process(final CurlRequest request) {
-		// Add headers for SSO
+		// Add headers for SSO, the accepted type may be overridden by the request
 		request.getHeaders().put("x-vcloud-authorization", token);
-		request.getHeaders().put("Accept", "application/*+xml;version=5.1");
-		return super.process(request);
+		request.getHeaders().putIfAbsent("Accept", ACCEPT);
+		if (client == null) {
+			return super.process(request);
+		}
+		return processPooled(request);
+	}
+
+	/**
+	 * Limit the rate of the pooled requests.
+	 *
+	 * @param limiter The rate limiter.
+	 * @param key     The bucket key of the requests of this processor, see {@link VCloudRateLimiter#toKey}.
+	 */
+	public void limit(final VCloudRateLimiter limiter, final String key) {
+		this.limiter = limiter;
+		this.rateKey = key;
+	}
+
+	/**
+	 * Execute the request with the pooled client. When the circuit of the endpoint is open, the request is rejected
+	 * without being sent. When the rate is limited, the request waits for its turn, and is retried when vCloud
+	 * throttles it.
+	 *
+	 * @param request The request to execute.
+	 * @return <code>true</code> when the request succeed.
+	 */
+	private boolean processPooled(final CurlRequest request) {
+		var result = processPooledOnce(request);
+		for (var retry = 0; limiter != null && VCloudRateLimiter.isThrottled(status)
+				&& retry < limiter.getRetries(); retry++) {
+			log.info("Request throttled {} {} with status {}, retry {}", request.getMethod(), request.getUrl(), status,
+					retry + 1);
+			result = processPooledOnce(request);
+		}
+		return result;
+	}
+
+	/**
+	 * Execute the request once with the pooled client.
+	 */
+	private boolean processPooledOnce(final CurlRequest request) {
+		status = 0;
+		if (limiter != null) {
+			// Before the circuit check, a throttled request must not hold the trial of a half-open circuit
+			limiter.acquire(rateKey);
+		}
+		final var builder = ClassicRequestBuilder.create(request.getMethod()).setUri(request.getUrl());
+		request.getHeaders().entrySet().stream().filter(h -> h.getValue() != null)
+				.forEach(h -> builder.addHeader(h.getKey(), h.getValue()));
+		if (request.getContent() != null) {
+			builder.setEntity(new StringEntity(request.getContent(), StandardCharsets.UTF_8));
+		}
+
+		// Specific timeout
+		final var context = HttpClientContext.create();
+		if (request.getTimeout() != null) {
+			context.setRequestConfig(
+					RequestConfig.custom().setResponseTimeout(Timeout.ofMilliseconds(request.getTimeout())).build());
+		}
+
+		final var bytes = new AtomicLong();
+		final var retryAfter = new AtomicLong();
+		final var start = System.nanoTime();
+		if (breaker != null) {
+			breaker.acquire(request.getUrl());
+		}
+		try {
+			return client.execute(builder.build(), context, response -> {
+				status = response.getCode();
+				retryAfter.set(VCloudRateLimiter.toRetryAfter(response));
+				count(response, bytes);
+				return ObjectUtils.getIfNull(request.getCallback(), DEFAULT_CALLBACK).onResponse(request, response);
+			});
+		} catch (final IOException e) {
+			log.warn("Request execution failed {} {}: {}", request.getMethod(), request.getUrl(), e.getMessage());
+			return false;
+		} finally {
+			if (breaker != null) {
+				breaker.record(request.getUrl(), status);
+			}
+			if (limiter != null) {
+				limiter.record(rateKey, status, retryAfter.get());
+			}
+			if (metrics != null) {
+				metrics.recordRequest(request.getMethod(), request.getUrl(), status, bytes.get(),
+						System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * Count the bytes read from the response body.
+	 */
+	private void count(final ClassicHttpResponse response, final AtomicLong bytes) {
+		if (response.getEntity() != null) {
+			response.setEntity(new HttpEntityWrapper(response.getEntity()) {
+				@Override
+				public InputStream getContent() throws IOException {
+					return new ProxyInputStream(super.getContent()) {
+						@Override
+						protected void afterRead(final int n) {
+							if (n > 0) {
+								bytes.addAndGet(n);
+							}
+						}
+					};
+				}
+			});
+		}
 	}
 
 }
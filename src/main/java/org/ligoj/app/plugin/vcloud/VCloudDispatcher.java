@@ -0,0 +1,226 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Staggered dispatch of the scheduled executions. The executions received in a burst, such as the schedules sharing
+ * the same cron expression, are released one by one over a time window with a random jitter, instead of hitting the
+ * directors in the same second. The releases are fair: the tenants, by vCloud endpoint and organization, are served in
+ * a round-robin order, so a tenant with many executions does not starve the other ones. The callers, such as the
+ * scheduler threads, do not wait: each execution runs on its own virtual thread once released.
+ */
+@Component
+@Slf4j
+public class VCloudDispatcher implements InitializingBean, DisposableBean {
+
+	/**
+	 * Duration in milliseconds over which a burst of executions is spread. <code>0</code> disables the dispatch.
+	 */
+	@Value("${saas.service-vm-vcloud-dispatch-window:0}")
+	private long window;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	/**
+	 * The executor running the released executions, one virtual thread per execution.
+	 */
+	private final ExecutorService executor = Executors
+			.newThreadPerTaskExecutor(Thread.ofVirtual().name("vcloud-dispatched-", 0).factory());
+
+	/**
+	 * Waiting executions by tenant. Guarded by this dispatcher.
+	 */
+	private final Map<String, Deque<CompletableFuture<Void>>> queues = new HashMap<>();
+
+	/**
+	 * Tenants having waiting executions, in their turn order. Guarded by this dispatcher.
+	 */
+	private final Deque<String> turns = new ArrayDeque<>();
+
+	/**
+	 * Amount of waiting executions. Guarded by this dispatcher.
+	 */
+	private int pending;
+
+	/**
+	 * Timestamp by which the current burst should be released. Guarded by this dispatcher.
+	 */
+	private long deadline;
+
+	/**
+	 * Timestamp of the next release. Guarded by this dispatcher.
+	 */
+	private long next;
+
+	/**
+	 * The thread releasing the executions, started on the first execution. Guarded by this dispatcher.
+	 */
+	private Thread releaser;
+
+	/**
+	 * Indicate the dispatch is enabled.
+	 *
+	 * @return <code>true</code> when the executions are spread over a time window.
+	 */
+	public boolean isEnabled() {
+		return window > 0;
+	}
+
+	/**
+	 * Run an execution at its turn, without waiting for it. The execution runs on its own virtual thread once
+	 * released, or when the dispatcher is stopped. When the dispatch is disabled, the execution runs immediately in
+	 * the calling thread.
+	 *
+	 * @param tenant    The tenant key, see {@link VCloudRateLimiter#toKey(String, String)}.
+	 * @param execution The execution to run. Its failures are only logged when dispatched.
+	 */
+	public void dispatch(final String tenant, final Runnable execution) {
+		if (!isEnabled()) {
+			execution.run();
+			return;
+		}
+		final var ticket = new CompletableFuture<Void>();
+		final var queued = System.nanoTime();
+		ticket.whenCompleteAsync((r, e) -> {
+			metrics.recordDispatch(tenant.substring(0, tenant.indexOf("##")), System.nanoTime() - queued);
+			if (e != null) {
+				// Dispatcher stopped, proceed
+				log.info("vCloud dispatch stopped, execution of {} released", tenant);
+			}
+			try {
+				execution.run();
+			} catch (final RuntimeException re) {
+				log.warn("Dispatched execution of {} failed", tenant, re);
+			}
+		}, executor);
+		enqueue(tenant, ticket);
+	}
+
+	/**
+	 * Queue an execution of a tenant. A new burst starts when the previous one should be already released.
+	 */
+	private synchronized void enqueue(final String tenant, final CompletableFuture<Void> ticket) {
+		final var now = System.currentTimeMillis();
+		if (deadline < now) {
+			deadline = now + window;
+		}
+		queues.computeIfAbsent(tenant, k -> new ArrayDeque<>()).add(ticket);
+		if (!turns.contains(tenant)) {
+			turns.add(tenant);
+		}
+		pending++;
+
+		// More pending executions, shorter delays
+		next = Math.min(next, now + jitter(now));
+		if (releaser == null) {
+			releaser = Thread.ofPlatform().name("vcloud-dispatch").daemon().start(this::release);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Return the random delay before the next release, so the pending executions are evenly spread until the deadline
+	 * on average. Must hold the lock.
+	 */
+	private long jitter(final long now) {
+		final var remaining = deadline - now;
+		if (remaining <= 0) {
+			return 0;
+		}
+		return Math.min(remaining, ThreadLocalRandom.current().nextLong(2 * remaining / (pending + 1) + 1));
+	}
+
+	/**
+	 * Release the executions at their turn, until the dispatcher is stopped.
+	 */
+	private synchronized void release() {
+		while (releaser == Thread.currentThread()) {
+			try {
+				final var now = System.currentTimeMillis();
+				if (pending == 0) {
+					wait();
+				} else if (now < next) {
+					wait(next - now);
+				} else {
+					releaseNext();
+					next = now + jitter(now);
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Release the first execution of the next tenant, and move this tenant to the end of the turns. Must hold the
+	 * lock.
+	 */
+	private void releaseNext() {
+		while (pending > 0) {
+			final var tenant = turns.poll();
+			final var queue = queues.get(tenant);
+			final var ticket = queue.poll();
+			pending--;
+			if (queue.isEmpty()) {
+				queues.remove(tenant);
+			} else {
+				turns.add(tenant);
+			}
+			if (ticket.complete(null)) {
+				return;
+			}
+			// This execution is already released, release the next one
+		}
+	}
+
+	/**
+	 * Return the amount of waiting executions.
+	 *
+	 * @return The amount of waiting executions.
+	 */
+	public synchronized int getPending() {
+		return pending;
+	}
+
+	/**
+	 * Stop the dispatcher and release all the waiting executions.
+	 */
+	public synchronized void clear() {
+		queues.values().forEach(q -> q.forEach(t -> t.cancel(false)));
+		queues.clear();
+		turns.clear();
+		pending = 0;
+		releaser = null;
+		notifyAll();
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		metrics.registerDispatchQueue(this::getPending);
+	}
+
+	@Override
+	public void destroy() {
+		clear();
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Report of a bulk execution.
+ */
+@Getter
+@Setter
+public class VCloudExecutionReport {
+
+	/**
+	 * The results, in the same order as the executions.
+	 */
+	private List<VCloudExecutionResult> results;
+
+	/**
+	 * Duration in milliseconds of the whole bulk execution.
+	 */
+	private long duration;
+
+	/**
+	 * Return the amount of failed executions.
+	 *
+	 * @return The amount of failed executions.
+	 */
+	public long getFailed() {
+		return results.stream().filter(r -> !r.isSucceed()).count();
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.ligoj.app.plugin.vm.model.VmOperation;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Outcome of a VM execution within a bulk execution.
+ */
+@Getter
+@Setter
+public class VCloudExecutionResult {
+
+	/**
+	 * The subscription identifier.
+	 */
+	private int subscription;
+
+	/**
+	 * The VM name, when resolved.
+	 */
+	private String vm;
+
+	/**
+	 * The requested operation.
+	 */
+	private VmOperation requested;
+
+	/**
+	 * The executed operation. <code>null</code> when the operation was useless or has failed.
+	 */
+	private VmOperation executed;
+
+	/**
+	 * Indicates the execution has succeed, the useless operations included.
+	 */
+	private boolean succeed;
+
+	/**
+	 * Error message when the execution has failed.
+	 */
+	private String error;
+
+	/**
+	 * Duration in milliseconds of the execution, waiting time excluded.
+	 */
+	private long duration;
+
+	/**
+	 * Waiting time in milliseconds before the execution, because of the concurrency limit.
+	 */
+	private long wait;
+}
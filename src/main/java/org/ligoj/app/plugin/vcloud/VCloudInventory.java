@@ -0,0 +1,281 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Local inventory of the VMs of each vCloud node, synchronized in background. The VMs are held in a compact
+ * {@link VCloudVmStore}, and their names are indexed by trigrams, so the infix name searches are answered without
+ * querying vCloud. The searches fall back to the live queries when the inventory of a node is not available.
+ */
+@Component
+@Slf4j
+public class VCloudInventory implements DisposableBean {
+
+	/**
+	 * Length of the indexed name fragments.
+	 */
+	private static final int GRAM = 3;
+
+	/**
+	 * Interval in milliseconds between two synchronizations. <code>0</code> disables the background synchronization.
+	 * An inventory older than twice this interval is considered as stale, and is no more used.
+	 */
+	@Value("${saas.service-vm-vcloud-inventory-refresh:0}")
+	private long refresh;
+
+	/**
+	 * Inventory by node.
+	 */
+	private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * The synchronization of all nodes, available once started.
+	 */
+	private Runnable synchronizer;
+
+	/**
+	 * Indicates an early synchronization is pending.
+	 */
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	/**
+	 * Inventory of a node. Only the power states of the VMs are updated in place.
+	 *
+	 * @param vms    The compact store of the VMs sorted by name.
+	 * @param names  The lower case names, in the same order.
+	 * @param grams  The sorted positions of the names by trigram.
+	 * @param synced The synchronization timestamp.
+	 */
+	private record Snapshot(VCloudVmStore vms, String[] names, Map<String, int[]> grams, long synced) {
+	}
+
+	/**
+	 * The VMs matching a search. Only the positions are held, the VM beans are built for the requested page.
+	 *
+	 * @param vms       The compact store of the VMs.
+	 * @param positions The positions of the matching VMs in the store, sorted by name.
+	 */
+	public record Matches(VCloudVmStore vms, int[] positions) {
+
+		/**
+		 * Return the amount of matching VMs.
+		 *
+		 * @return The amount of matching VMs.
+		 */
+		public int size() {
+			return positions.length;
+		}
+
+		/**
+		 * Return a page of the matching VMs.
+		 *
+		 * @param from The first match, inclusive.
+		 * @param to   The last match, exclusive. Bounded to the amount of matches.
+		 * @return The new VM beans of this page.
+		 */
+		public List<VCloudVm> get(final int from, final int to) {
+			return IntStream.range(Math.min(from, size()), Math.min(to, size())).mapToObj(i -> vms.get(positions[i]))
+					.toList();
+		}
+	}
+
+	/**
+	 * Start the background synchronization when enabled.
+	 *
+	 * @param synchronizer The synchronization of all nodes, updating this inventory.
+	 */
+	public void start(final Runnable synchronizer) {
+		if (refresh > 0 && scheduler == null) {
+			log.info("Start the vCloud inventory synchronization every {}ms", refresh);
+			this.synchronizer = () -> {
+				pending.set(false);
+				try {
+					synchronizer.run();
+				} catch (final RuntimeException e) {
+					log.warn("vCloud inventory synchronization failed", e);
+				}
+			};
+			scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("vcloud-inventory")
+					.daemon().factory());
+			scheduler.scheduleWithFixedDelay(this.synchronizer, 0, refresh, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Request an early synchronization of all nodes, such as after a VM creation. The requests received before the
+	 * synchronization starts are coalesced. Ignored when the background synchronization is disabled.
+	 */
+	public void requestSync() {
+		if (scheduler != null && pending.compareAndSet(false, true)) {
+			scheduler.execute(synchronizer);
+		}
+	}
+
+	/**
+	 * Replace the inventory of a node.
+	 *
+	 * @param node The node identifier.
+	 * @param vms  All the VMs of this node.
+	 */
+	public void update(final String node, final Collection<VCloudVm> vms) {
+		final var snapshot = newSnapshot(vms, System.currentTimeMillis());
+		snapshots.put(node, snapshot);
+		log.info("vCloud inventory of {} synchronized with {} VMs and {} trigrams", node, snapshot.vms().size(),
+				snapshot.grams().size());
+	}
+
+	/**
+	 * Remove a VM from the inventories, such as after a VM deletion. The synchronization timestamps are unchanged.
+	 *
+	 * @param id The VM identifier.
+	 */
+	public void remove(final String id) {
+		snapshots.replaceAll((node, snapshot) -> {
+			if (snapshot.vms().indexOf(id) < 0) {
+				return snapshot;
+			}
+			return newSnapshot(snapshot.vms().stream().filter(vm -> !id.equals(vm.getId())).toList(),
+					snapshot.synced());
+		});
+	}
+
+	/**
+	 * Update the power state of a VM in the inventories, such as after a power event. The synchronization timestamps
+	 * are unchanged.
+	 *
+	 * @param id       The VM identifier.
+	 * @param status   The new status.
+	 * @param deployed The new deployed flag.
+	 */
+	public void setStatus(final String id, final VmStatus status, final boolean deployed) {
+		snapshots.values().forEach(snapshot -> {
+			final var index = snapshot.vms().indexOf(id);
+			if (index >= 0) {
+				snapshot.vms().setStatus(index, status, deployed);
+			}
+		});
+	}
+
+	/**
+	 * Build an indexed inventory of the given VMs.
+	 */
+	private Snapshot newSnapshot(final Collection<VCloudVm> vms, final long synced) {
+		final var sorted = vms.toArray(VCloudVm[]::new);
+		// Case-insensitive order, the case only breaks the ties
+		Arrays.sort(sorted, Comparator.comparing(VCloudVm::getName, Comparator
+				.nullsFirst(String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()))));
+		final var store = new VCloudVmStore(Arrays.asList(sorted));
+		final var names = new String[sorted.length];
+		final var positions = new HashMap<String, List<Integer>>();
+		for (var i = 0; i < sorted.length; i++) {
+			// Same instance as the stored name when already in lower case
+			names[i] = StringUtils.defaultString(store.getName(i)).toLowerCase(Locale.ENGLISH);
+			for (var j = 0; j + GRAM <= names[i].length(); j++) {
+				final var list = positions.computeIfAbsent(names[i].substring(j, j + GRAM), g -> new ArrayList<>());
+				if (list.isEmpty() || list.getLast() != i) {
+					list.add(i);
+				}
+			}
+		}
+		final var grams = new HashMap<String, int[]>(positions.size());
+		positions.forEach((g, p) -> grams.put(g, p.stream().mapToInt(Integer::intValue).toArray()));
+		return new Snapshot(store, names, grams, synced);
+	}
+
+	/**
+	 * Return the VMs whose name contains the given criteria ignoring the case, sorted by name ignoring the case.
+	 *
+	 * @param node     The node identifier.
+	 * @param criteria The search criteria.
+	 * @return The matching VMs. <code>null</code> when the inventory of this node is not available or is stale.
+	 */
+	public Matches find(final String node, final String criteria) {
+		final var snapshot = snapshots.get(node);
+		if (snapshot == null || refresh > 0 && System.currentTimeMillis() - snapshot.synced() > 2 * refresh) {
+			// Not available or stale inventory
+			return null;
+		}
+		final var text = StringUtils.defaultString(criteria).toLowerCase(Locale.ENGLISH);
+		final var names = snapshot.names();
+		if (text.length() < GRAM) {
+			// Too short to use the index
+			return new Matches(snapshot.vms(),
+					IntStream.range(0, names.length).filter(i -> names[i].contains(text)).toArray());
+		}
+
+		// Use the most selective trigram, and check the candidates
+		int[] candidates = null;
+		for (var j = 0; j + GRAM <= text.length(); j++) {
+			final var positions = snapshot.grams().get(text.substring(j, j + GRAM));
+			if (positions == null) {
+				// No name with this trigram
+				return new Matches(snapshot.vms(), new int[0]);
+			}
+			if (candidates == null || positions.length < candidates.length) {
+				candidates = positions;
+			}
+		}
+		return new Matches(snapshot.vms(), Arrays.stream(candidates).filter(i -> names[i].contains(text)).toArray());
+	}
+
+	/**
+	 * Return the last synchronization timestamp of a node.
+	 *
+	 * @param node The node identifier.
+	 * @return The last synchronization timestamp. <code>0</code> when never synchronized.
+	 */
+	public long getLastSync(final String node) {
+		final var snapshot = snapshots.get(node);
+		return snapshot == null ? 0 : snapshot.synced();
+	}
+
+	/**
+	 * Return the amount of VMs in the inventory of a node.
+	 *
+	 * @param node The node identifier.
+	 * @return The amount of VMs. <code>0</code> when never synchronized.
+	 */
+	public int size(final String node) {
+		final var snapshot = snapshots.get(node);
+		return snapshot == null ? 0 : snapshot.vms().size();
+	}
+
+	/**
+	 * Remove all inventories.
+	 */
+	public void clear() {
+		snapshots.clear();
+	}
+
+	@Override
+	public void destroy() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+}
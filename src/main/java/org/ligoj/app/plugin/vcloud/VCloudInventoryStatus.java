@@ -0,0 +1,25 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Status of the local VM inventory of a node.
+ */
+@Getter
+@AllArgsConstructor
+public class VCloudInventoryStatus {
+
+	/**
+	 * Amount of inventoried VMs.
+	 */
+	private int size;
+
+	/**
+	 * Last synchronization timestamp. <code>0</code> when never synchronized.
+	 */
+	private long lastSync;
+}
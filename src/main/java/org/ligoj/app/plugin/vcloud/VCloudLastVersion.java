@@ -0,0 +1,207 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import jakarta.ws.rs.HttpMethod;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.ligoj.bootstrap.core.curl.CurlRequest;
+import org.ligoj.bootstrap.core.json.ObjectMapperTrim;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Last vCloud version published by VMware. The version is cached for a long time, and refreshed in background with a
+ * conditional request once expired, so the callers never wait for the external site. The last known version is
+ * persisted, and is used after a restart. Only the very first calls, without any known version, wait for the same
+ * single load from the remote site within a bounded timeout. The requests share the pooled HTTP client of the site.
+ */
+@Component
+@Slf4j
+public class VCloudLastVersion {
+
+	/**
+	 * Configuration name of the last known version.
+	 */
+	static final String CONFIGURATION = VCloudPluginResource.KEY + ":last-version";
+
+	/**
+	 * Minimal delay in milliseconds between two refresh attempts.
+	 */
+	private static final long RETRY = 60000;
+
+	private static final ObjectMapperTrim JSON = new ObjectMapperTrim();
+
+	/**
+	 * URL of the published versions, may be a mirror.
+	 */
+	@Value("${saas.service-vm-vcloud-version-url:https://customerconnect.vmware.com/channel/public/api/v1.0/products/getProductHeader?category=datacenter_cloud_infrastructure&product=vmware_vcloud_suite&version=2019}")
+	private String url;
+
+	/**
+	 * Time to live in milliseconds of the last version before a background refresh.
+	 */
+	@Value("${saas.service-vm-vcloud-version-ttl:86400000}")
+	private long ttl;
+
+	/**
+	 * Timeout in milliseconds of the remote requests.
+	 */
+	@Value("${saas.service-vm-vcloud-version-timeout:5000}")
+	private int timeout;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private VCloudConnectionManager connectionManager;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	/**
+	 * Indicates the first load, persisted or remote, is done.
+	 */
+	private volatile boolean loaded;
+
+	/**
+	 * The last known version.
+	 */
+	private volatile String version;
+
+	/**
+	 * Validation timestamp of the last known version. <code>0</code> when not validated against the remote site.
+	 */
+	private volatile long validated;
+
+	/**
+	 * Timestamp of the last refresh attempt. <code>0</code> when never attempted.
+	 */
+	private volatile long attempted;
+
+	/**
+	 * Entity tag of the last response.
+	 */
+	private volatile String etag;
+
+	/**
+	 * Last modification date of the last response.
+	 */
+	private volatile String lastModified;
+
+	/**
+	 * Indicates a background refresh is running.
+	 */
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+
+	/**
+	 * Return the last version. A background refresh is started when the version has expired.
+	 *
+	 * @return The last version. <code>null</code> when never retrieved.
+	 */
+	public String get() {
+		if (!loaded) {
+			load();
+			return version;
+		}
+		final var now = System.currentTimeMillis();
+		if (now - validated > ttl && now - attempted > RETRY && refreshing.compareAndSet(false, true)) {
+			Thread.ofVirtual().name("vcloud-version").start(() -> {
+				try {
+					refresh();
+				} finally {
+					refreshing.set(false);
+				}
+			});
+		}
+		return version;
+	}
+
+	/**
+	 * Load the last known version once. The concurrent first callers wait for the same load.
+	 */
+	private synchronized void load() {
+		if (loaded) {
+			return;
+		}
+		// Last known version after a restart
+		version = configuration.get(CONFIGURATION);
+		if (version == null) {
+			// Nothing known yet, bounded synchronous refresh
+			refresh();
+		}
+		loaded = true;
+	}
+
+	/**
+	 * Refresh the last version with a conditional request. The known version is kept when the remote site is not
+	 * available or the response is not valid.
+	 */
+	void refresh() {
+		attempted = System.currentTimeMillis();
+		final var headers = new ArrayList<String>();
+		headers.add(HttpHeaders.ACCEPT + ":application/json");
+		if (etag != null) {
+			headers.add(HttpHeaders.IF_NONE_MATCH + ":" + etag);
+		}
+		if (lastModified != null) {
+			headers.add(HttpHeaders.IF_MODIFIED_SINCE + ":" + lastModified);
+		}
+		final var body = new String[1];
+		final var request = new CurlRequest(HttpMethod.GET, url, null, (r, response) -> {
+			if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+				return true;
+			}
+			if (response.getCode() == HttpStatus.SC_OK) {
+				body[0] = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+				etag = response.containsHeader(HttpHeaders.ETAG) ? response.getFirstHeader(HttpHeaders.ETAG).getValue()
+						: null;
+				lastModified = response.containsHeader(HttpHeaders.LAST_MODIFIED)
+						? response.getFirstHeader(HttpHeaders.LAST_MODIFIED).getValue()
+						: null;
+				return true;
+			}
+			return false;
+		}, headers.toArray(String[]::new));
+		request.setTimeout(timeout);
+		try (var curl = new VCloudCurlProcessor(connectionManager.getClient(url), metrics)) {
+			if (!curl.process(request)) {
+				log.info("Unable to refresh the last vCloud version from {}, keep {}", url, version);
+				return;
+			}
+		}
+		validated = System.currentTimeMillis();
+		if (body[0] != null) {
+			update(body[0]);
+		}
+	}
+
+	/**
+	 * Update and persist the last version from the published versions.
+	 */
+	private void update(final String versionsAsString) {
+		try {
+			final var versions = JSON.readValue(versionsAsString, VCloudVersions.class);
+			final var last = versions.getVersions().stream().map(o -> Objects.toString(o.get("id"), "0"))
+					.filter(v -> !v.isBlank()).sorted().findFirst().orElse(null);
+			if (last != null && !last.equals(version)) {
+				log.info("Last vCloud version is {}", last);
+				version = last;
+				configuration.put(CONFIGURATION, last);
+			}
+		} catch (final IOException e) {
+			log.info("Invalid vCloud versions from {}: {}", url, e.getMessage());
+		}
+	}
+}
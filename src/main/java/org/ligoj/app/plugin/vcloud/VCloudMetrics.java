@@ -0,0 +1,203 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.ws.rs.HttpMethod;
+import lombok.Getter;
+import org.apache.commons.lang3.Strings;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * vCloud metrics: latency of the vCloud requests by operation, HTTP status and response size, session cache hits, XML
+ * parse time, circuit breaker transitions, throttled requests and dispatch queue. The meters are registered in the
+ * application {@link MeterRegistry} when available, so they are exposed with the other metrics. The requests are tagged
+ * by vCloud endpoint, identifying the node.
+ */
+@Component
+public class VCloudMetrics implements InitializingBean {
+
+	/**
+	 * Latency of the vCloud requests.
+	 */
+	public static final String REQUEST = "vcloud.request";
+
+	/**
+	 * Size of the vCloud responses.
+	 */
+	public static final String RESPONSE_SIZE = "vcloud.response.size";
+
+	/**
+	 * Session token cache lookups.
+	 */
+	public static final String SESSION = "vcloud.session";
+
+	/**
+	 * Duration of the streamed XML parsing.
+	 */
+	public static final String PARSE = "vcloud.parse";
+
+	/**
+	 * Circuit breaker state transitions.
+	 */
+	public static final String CIRCUIT = "vcloud.circuit";
+
+	/**
+	 * Requests throttled by vCloud.
+	 */
+	public static final String THROTTLE = "vcloud.throttle";
+
+	/**
+	 * Waiting time of the scheduled executions before their dispatch.
+	 */
+	public static final String DISPATCH_WAIT = "vcloud.dispatch.wait";
+
+	/**
+	 * Amount of scheduled executions waiting for their dispatch.
+	 */
+	public static final String DISPATCH_QUEUE = "vcloud.dispatch.queue";
+
+	@Autowired
+	private ObjectProvider<MeterRegistry> registryProvider;
+
+	/**
+	 * The registry holding the vCloud meters.
+	 */
+	@Getter
+	private MeterRegistry registry;
+
+	/**
+	 * Return the operation name of the given request.
+	 *
+	 * @param method The HTTP method.
+	 * @param url    The request URL.
+	 * @return The operation name: login, logout, probe, query, admin, power, undeploy, screen, task or other.
+	 */
+	static String toOperation(final String method, final String url) {
+		final var path = URI.create(url).getPath();
+		if (HttpMethod.POST.equals(method)) {
+			if (path.endsWith("/sessions")) {
+				return "login";
+			}
+			if (path.contains("/power/action/")) {
+				return "power";
+			}
+			if (path.endsWith("/action/undeploy")) {
+				return "undeploy";
+			}
+		} else if (path.endsWith("/session")) {
+			return HttpMethod.DELETE.equals(method) ? "logout" : "probe";
+		} else if (path.endsWith("/query")) {
+			return "query";
+		} else if (path.endsWith("/admin")) {
+			return "admin";
+		} else if (path.endsWith("/screen")) {
+			return "screen";
+		} else if (Strings.CS.contains(path, "/task/")) {
+			return "task";
+		}
+		return "other";
+	}
+
+	/**
+	 * Record a completed vCloud request.
+	 *
+	 * @param method The HTTP method.
+	 * @param url    The request URL.
+	 * @param status The HTTP status. <code>0</code> when there is no response.
+	 * @param bytes  The amount of bytes read from the response body.
+	 * @param nanos  The request duration in nanoseconds, including the response handling.
+	 */
+	public void recordRequest(final String method, final String url, final int status, final long bytes,
+			final long nanos) {
+		final var operation = toOperation(method, url);
+		final var endpoint = VCloudConnectionManager.toEndpoint(url);
+		Timer.builder(REQUEST).description("vCloud request latency").tag("operation", operation)
+				.tag("endpoint", endpoint).tag("status", String.valueOf(status)).publishPercentileHistogram()
+				.register(registry).record(nanos, TimeUnit.NANOSECONDS);
+		DistributionSummary.builder(RESPONSE_SIZE).description("vCloud response body size").baseUnit("bytes")
+				.tag("operation", operation).tag("endpoint", endpoint).register(registry).record(bytes);
+	}
+
+	/**
+	 * Record a session token lookup.
+	 *
+	 * @param url The session URL.
+	 * @param hit <code>true</code> when the token is served from the cache.
+	 */
+	public void recordSession(final String url, final boolean hit) {
+		Counter.builder(SESSION).description("vCloud session token lookups").tag("result", hit ? "hit" : "miss")
+				.tag("endpoint", VCloudConnectionManager.toEndpoint(url)).register(registry).increment();
+	}
+
+	/**
+	 * Record the duration of a streamed XML parsing.
+	 *
+	 * @param url   The request URL.
+	 * @param nanos The parse duration in nanoseconds.
+	 */
+	public void recordParse(final String url, final long nanos) {
+		Timer.builder(PARSE).description("vCloud XML parse duration")
+				.tag("endpoint", VCloudConnectionManager.toEndpoint(url)).register(registry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Record a circuit breaker state transition.
+	 *
+	 * @param endpoint The vCloud endpoint.
+	 * @param state    The new circuit state.
+	 */
+	public void recordCircuit(final String endpoint, final String state) {
+		Counter.builder(CIRCUIT).description("vCloud circuit breaker transitions").tag("endpoint", endpoint)
+				.tag("state", state).register(registry).increment();
+	}
+
+	/**
+	 * Record a request throttled by vCloud.
+	 *
+	 * @param endpoint The vCloud endpoint.
+	 */
+	public void recordThrottle(final String endpoint) {
+		Counter.builder(THROTTLE).description("vCloud throttled requests").tag("endpoint", endpoint).register(registry)
+				.increment();
+	}
+
+	/**
+	 * Record the waiting time of a scheduled execution before its dispatch.
+	 *
+	 * @param endpoint The vCloud endpoint.
+	 * @param nanos    The waiting time in nanoseconds.
+	 */
+	public void recordDispatch(final String endpoint, final long nanos) {
+		Timer.builder(DISPATCH_WAIT).description("vCloud dispatch waiting time").tag("endpoint", endpoint)
+				.register(registry).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Register the gauge of the scheduled executions waiting for their dispatch.
+	 *
+	 * @param depth The amount of waiting executions.
+	 */
+	public void registerDispatchQueue(final Supplier<Number> depth) {
+		Gauge.builder(DISPATCH_QUEUE, depth).description("vCloud dispatch queue depth").register(registry);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		registry = registryProvider.getIfAvailable(SimpleMeterRegistry::new);
+	}
+}
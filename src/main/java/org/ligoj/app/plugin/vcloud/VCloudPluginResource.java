@@ -5,30 +5,39 @@ package org.ligoj.app.plugin.vcloud;
 
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
-import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.core5.http.ContentType;
 import org.ligoj.app.api.SubscriptionStatusWithData;
 import org.ligoj.app.dao.NodeRepository;
+import org.ligoj.app.dao.ProjectRepository;
+import org.ligoj.app.plugin.vcloud.dao.VCloudParameterValueRepository;
+import org.ligoj.app.plugin.vcloud.dao.VCloudScheduleRepository;
 import org.ligoj.app.plugin.vm.VmResource;
 import org.ligoj.app.plugin.vm.dao.VmScheduleRepository;
-import org.ligoj.app.plugin.vm.execution.Vm;
 import org.ligoj.app.plugin.vm.execution.VmExecutionServicePlugin;
 import org.ligoj.app.plugin.vm.model.VmExecution;
 import org.ligoj.app.plugin.vm.model.VmOperation;
 import org.ligoj.app.plugin.vm.model.VmStatus;
 import org.ligoj.app.resource.plugin.AbstractToolPluginResource;
 import org.ligoj.app.resource.plugin.XmlUtils;
-import org.ligoj.bootstrap.core.curl.CurlCacheToken;
-import org.ligoj.bootstrap.core.curl.CurlProcessor;
 import org.ligoj.bootstrap.core.curl.CurlRequest;
 import org.ligoj.bootstrap.core.json.ObjectMapperTrim;
 import org.ligoj.bootstrap.core.resource.BusinessException;
@@ -38,14 +47,22 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * vCloud VM resource.
@@ -101,6 +118,21 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 	 */
 	public static final String PARAMETER_VM = KEY + ":id";
 
+	/**
+	 * Optional flag requesting the query records as JSON. Needs a director supporting the JSON media type.
+	 */
+	public static final String PARAMETER_JSON = KEY + ":json";
+
+	/**
+	 * Response header holding the total amount of records of a paged result.
+	 */
+	public static final String HEADER_TOTAL = "X-Total-Count";
+
+	/**
+	 * JSON mapper used to stream the results.
+	 */
+	private static final ObjectMapperTrim JSON = new ObjectMapperTrim();
+
 	private static final Map<VmOperation, String> OPERATION_TO_VCLOUD = new EnumMap<>(VmOperation.class);
 
 	/**
@@ -210,10 +242,10 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 			VmStatus.class);
 
 	@Autowired
-	private CurlCacheToken curlCacheToken;
+	private NodeRepository nodeRepository;
 
 	@Autowired
-	private NodeRepository nodeRepository;
+	private ProjectRepository projectRepository;
 
 	@Autowired
 	private SecurityHelper securityHelper;
@@ -221,41 +253,124 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 	@Autowired
 	private VmScheduleRepository vmScheduleRepository;
 
-	@Value("${saas.service-vm-vcloud-auth-retries:2}")
-	private int retries;
+	@Autowired
+	private VCloudScheduleRepository scheduleRepository;
+
+	@Autowired
+	private VCloudParameterValueRepository parameterValueRepository;
+
+	/**
+	 * Maximal amount of records per query page, also used to chunk the identifiers of a bulk query.
+	 */
+	@Value("${saas.service-vm-vcloud-page-size:128}")
+	private int pageSize;
+
+	/**
+	 * Maximal amount of concurrent executions against the same vCloud API during a bulk execution.
+	 */
+	@Value("${saas.service-vm-vcloud-bulk-concurrency:8}")
+	private int bulkConcurrency;
 
-	@Value("${saas.service-vm-vcloud-auth-timeout:5000}")
-	private int timeout;
+	/**
+	 * Duration in milliseconds of a successful status check.
+	 */
+	@Value("${saas.service-vm-vcloud-status-ttl:30000}")
+	private long statusTtl;
+
+	/**
+	 * Interval in milliseconds between two checks of the administration access. In between, only the session is
+	 * checked.
+	 */
+	@Value("${saas.service-vm-vcloud-status-admin-ttl:600000}")
+	private long adminTtl;
+
+	/**
+	 * Successful status checks by API URL and credentials.
+	 */
+	private final Map<String, Probe> probes = new ConcurrentHashMap<>();
+
+	/**
+	 * Successful status check.
+	 *
+	 * @param checked The timestamp of the last successful check.
+	 * @param admin   The timestamp of the last successful check of the administration access.
+	 */
+	private record Probe(long checked, long admin) {
+	}
+
+	/**
+	 * Bulk execution permits by vCloud API URL.
+	 */
+	private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
 
 	@Autowired
 	protected XmlUtils xml;
 
+	@Autowired
+	private VCloudConnectionManager connectionManager;
+
+	@Autowired
+	private VCloudVmCache vmCache;
+
+	@Autowired
+	private VCloudTaskTracker taskTracker;
+
+	@Autowired
+	private VCloudSingleFlight singleFlight;
+
+	@Autowired
+	private VCloudSessionManager sessionManager;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	@Autowired
+	private VCloudInventory inventory;
+
+	@Autowired
+	private VCloudLastVersion lastVersion;
+
+	@Autowired
+	private VCloudAsyncClient asyncClient;
+
+	@Autowired
+	private VCloudConsoleCache consoleCache;
+
+	@Autowired
+	private VCloudConsoleStreamer consoleStreamer;
+
+	@Autowired
+	private VCloudDispatcher dispatcher;
+
 	/**
-	 * Cache the API token.
-	 *
-	 * @param url            The remote URL. Trailing <code>/</code> is removed.
-	 * @param authentication Credential.
-	 * @param processor      The CURL processor with pre-authenticated token.
-	 * @return The remote resource content. May be <code>null</code> with error.
+	 * vCloud API version requested with the JSON media type.
 	 */
-	private String authenticate(final String url, final String authentication, final VCloudCurlProcessor processor) {
-		return curlCacheToken.getTokenCache(VCloudPluginResource.class, url + "##" + authentication, k -> {
+	@Value("${saas.service-vm-vcloud-json-version:33.0}")
+	private String jsonVersion;
+
+	@Autowired
+	private VCloudCircuitBreaker breaker;
 
-			// Authentication request
-			final var request = new CurlRequest(HttpMethod.POST, url, null, VCloudCurlProcessor.LOGIN_CALLBACK,
-					"Authorization:Basic " + authentication);
+	@Autowired
+	private VCloudRateLimiter rateLimiter;
 
-			// Execute with a timeout
-			request.setTimeout(timeout);
-			processor.process(Collections.singletonList(request));
-			return processor.token;
-		}, retries, () -> new ValidationJsonException(PARAMETER_API, "vcloud-login"));
+	/**
+	 * Return a new processor using the pooled connections of the vCloud endpoint.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @return A new processor sharing the pooled connections. Must be closed by the caller.
+	 */
+	private VCloudCurlProcessor newProcessor(final Map<String, String> parameters) {
+		final var processor = new VCloudCurlProcessor(connectionManager.getClient(parameters.get(PARAMETER_API)),
+				metrics, breaker);
+		processor.limit(rateLimiter, toRateKey(parameters));
+		return processor;
 	}
 
 	/**
-	 * Prepare an authenticated connection to vCloud. The given processor would be updated with the security token.
+	 * Return the session URL and the encoded credentials of the given parameters.
 	 */
-	private void authenticate(final Map<String, String> parameters, final VCloudCurlProcessor processor) {
+	private String[] toSession(final Map<String, String> parameters) {
 		final var user = parameters.get(PARAMETER_USER);
 		final var password = StringUtils.trimToEmpty(parameters.get(PARAMETER_PASSWORD));
 		final var organization = StringUtils.trimToEmpty(parameters.get(PARAMETER_ORGANIZATION));
@@ -264,26 +379,163 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 		// Encode the authentication 'user@organization:password'
 		final var authentication = Base64
 				.encodeBase64String((user + "@" + organization + ":" + password).getBytes(StandardCharsets.UTF_8));
+		return new String[] { url, authentication };
+	}
 
-		// Authentication request using cache
-		processor.setToken(authenticate(url, authentication, processor));
+	/**
+	 * Prepare an authenticated connection to vCloud. The given processor would be updated with the security token.
+	 */
+	private void authenticate(final Map<String, String> parameters, final VCloudCurlProcessor processor) {
+		// Authentication request using the session cache
+		final var session = toSession(parameters);
+		processor.setToken(sessionManager.getToken(session[0], session[1]));
 	}
 
-	@Override
-	public VCloudVm getVmDetails(final Map<String, String> parameters)
-			throws SAXException, IOException, ParserConfigurationException {
+	/**
+	 * Execute a request with an authenticated processor. When the session has expired, the token is invalidated, and
+	 * the request is executed once again with a new session.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param processor  The CURL processor with pre-authenticated token.
+	 * @param request    The request to execute.
+	 * @return <code>true</code> when the request succeed.
+	 */
+	private boolean process(final Map<String, String> parameters, final VCloudCurlProcessor processor,
+			final CurlRequest request) {
+		final var result = processor.process(request);
+		if (processor.getStatus() == HttpServletResponse.SC_UNAUTHORIZED) {
+			// Expired session, retry once with a new session
+			final var session = toSession(parameters);
+			sessionManager.invalidate(session[0], session[1]);
+			authenticate(parameters, processor);
+			return processor.process(request);
+		}
+		return result;
+	}
 
+	@Override
+	public VCloudVm getVmDetails(final Map<String, String> parameters) {
 		final var id = parameters.get(PARAMETER_VM);
-		// Get the VM if exists
-		final var vms = toVms(getVCloudResource(parameters,
-				"/query?type=vm&format=idrecords&filter=id==urn:vcloud:vm:" + id + "&pageSize=1"));
+		final var resource = "/query?type=vm&format=idrecords&filter=id==urn:vcloud:vm:" + id + "&pageSize=1";
+		return vmCache.get(toScope(parameters), id,
+				() -> singleFlight.execute(toSharedKey(parameters, resource), () -> {
+					// Get the VM if exists
+					final var vms = queryVms(parameters, resource);
+
+					// Check the VM has been found
+					if (vms.isEmpty()) {
+						// Invalid id
+						throw new ValidationJsonException(PARAMETER_VM, "vcloud-vm", id);
+					}
+					return vms.get(0);
+				}));
+	}
 
-		// Check the VM has been found
-		if (vms.isEmpty()) {
-			// Invalid id
-			throw new ValidationJsonException(PARAMETER_VM, "vcloud-vm", id);
+	/**
+	 * Return the statistics of the VM state cache. Only available to the users seeing the vCloud service node.
+	 *
+	 * @return The statistics of the VM state cache. Empty when the vCloud service node is not visible.
+	 */
+	@GET
+	@Path("cache/vm")
+	public VCloudCacheStatistics getVmCacheStatistics() {
+		// Check the node exists
+		if (nodeRepository.findOneVisible(KEY, securityHelper.getLogin()) == null) {
+			return new VCloudCacheStatistics(0, 0, 0, 0);
 		}
-		return vms.get(0);
+		return vmCache.getStatistics();
+	}
+
+	/**
+	 * Return the details of the virtual machines attached to the given subscriptions. The subscriptions are grouped by
+	 * API URL and credentials, and each group is resolved with a single authentication and a few queries OR-ing the VM
+	 * identifiers.
+	 *
+	 * @param subscriptions The subscription identifiers.
+	 * @return The virtual machines by subscription. Subscriptions whose VM is not found, or not linked to a vCloud
+	 *         node, are not included.
+	 */
+	@GET
+	@Path("vm")
+	public Map<Integer, VCloudVm> getVmDetails(@QueryParam("subscription") final List<Integer> subscriptions) {
+		final var parameters = new LinkedHashMap<Integer, Map<String, String>>();
+		new LinkedHashSet<>(subscriptions).forEach(s -> {
+			final var p = subscriptionResource.getParameters(s);
+			// Ignore the subscriptions of the other tools
+			if (p.get(PARAMETER_API) != null && p.get(PARAMETER_VM) != null) {
+				parameters.put(s, p);
+			}
+		});
+		return getVmDetailsGrouped(parameters);
+	}
+
+	/**
+	 * Return the details of the virtual machines attached to the given subscriptions, grouped by API URL and
+	 * credentials.
+	 *
+	 * @param subscriptions The subscription parameters by subscription identifier.
+	 * @return The virtual machines by subscription. Subscriptions whose VM is not found are not included.
+	 */
+	private Map<Integer, VCloudVm> getVmDetailsGrouped(final Map<Integer, Map<String, String>> subscriptions) {
+		// Group the subscriptions sharing the same API URL and credentials
+		final var groups = new LinkedHashMap<String, Map<Integer, Map<String, String>>>();
+		subscriptions.forEach((s, p) -> groups.computeIfAbsent(toSharedKey(p, ""), k -> new LinkedHashMap<>())
+				.put(s, p));
+
+		// Resolve each group with its own authentication
+		final var result = new LinkedHashMap<Integer, VCloudVm>();
+		for (final var group : groups.values()) {
+			result.putAll(getVmDetails(group));
+		}
+		return result;
+	}
+
+	/**
+	 * Return the details of the virtual machines attached to the given subscriptions sharing the same credentials.
+	 *
+	 * @param subscriptions The subscription parameters by subscription identifier. All of them must share the same API
+	 *                      URL and credentials.
+	 * @return The virtual machines by subscription. Subscriptions whose VM is not found are not included.
+	 */
+	private Map<Integer, VCloudVm> getVmDetails(final Map<Integer, Map<String, String>> subscriptions) {
+		// Index the subscriptions by VM identifier, the same VM may be linked several times
+		final var subscriptionsByVm = new LinkedHashMap<String, List<Integer>>();
+		subscriptions.forEach((s, p) -> subscriptionsByVm.computeIfAbsent(p.get(PARAMETER_VM), k -> new ArrayList<>())
+				.add(s));
+
+		// Use the cached VM states first
+		final var result = new LinkedHashMap<Integer, VCloudVm>();
+		final var parameters = subscriptions.values().iterator().next();
+		final var scope = toScope(parameters);
+		final var missing = new ArrayList<String>();
+		subscriptionsByVm.forEach((id, s) -> {
+			final var vm = vmCache.get(scope, id);
+			if (vm == null) {
+				missing.add(id);
+			} else {
+				s.forEach(subscription -> result.put(subscription, vm));
+			}
+		});
+		if (missing.isEmpty()) {
+			return result;
+		}
+
+		final var since = vmCache.begin();
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			for (final var ids : ListUtils.partition(missing, pageSize)) {
+				// OR filter of the identifiers of this chunk
+				final var filter = ids.stream().map(id -> "id==urn:vcloud:vm:" + id).collect(Collectors.joining(","));
+				final var vms = queryVms(processor, parameters,
+						"/query?type=vm&format=idrecords&filter=" + filter + "&pageSize=" + ids.size());
+				vms.forEach(vm -> {
+					vmCache.put(scope, vm, since);
+					subscriptionsByVm.getOrDefault(vm.getId(), Collections.emptyList())
+							.forEach(s -> result.put(s, vm));
+				});
+			}
+		}
+		return result;
 	}
 
 	@Override
@@ -293,104 +545,463 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 	}
 
 	/**
-	 * Find the virtual machines matching to the given criteria. Look into virtual machine name only.
+	 * Find the virtual machines matching to the given criteria. Look into virtual machine name only. Only the first 10
+	 * matches are returned.
 	 *
 	 * @param node     the node to be tested with given parameters.
 	 * @param criteria the search criteria. Case is insensitive.
 	 * @return virtual machines.
-	 * @throws IOException                  When VM definition XML cannot be retrieved.
-	 * @throws SAXException                 When the XML validation failed.
-	 * @throws ParserConfigurationException When the XML parsing failed.
+	 */
+	public List<VCloudVm> findAllByName(final String node, final String criteria) {
+		// Check the node exists
+		if (nodeRepository.findOneVisible(node, securityHelper.getLogin()) == null) {
+			return Collections.emptyList();
+		}
+
+		// Use the local inventory when available
+		final var inventoried = inventory.find(node, criteria);
+		if (inventoried != null) {
+			return inventoried.get(0, 10);
+		}
+
+		// Get the VMs and parse them
+		return queryVms(pvResource.getNodeParameters(node), toSearchQuery(criteria, 1, 10));
+	}
+
+	/**
+	 * Find the virtual machines matching to the given criteria, page by page. Look into virtual machine name only. The
+	 * total amount of matches is returned in the {@value #HEADER_TOTAL} header.
+	 *
+	 * @param node     the node to be tested with given parameters.
+	 * @param criteria the search criteria. Case is insensitive.
+	 * @param page     the page to return, starting from 1.
+	 * @param rows     the maximal amount of virtual machines per page. Bounded to the vCloud page size.
+	 * @param stream   When <code>true</code>, all the pages starting from the requested one are returned in a single
+	 *                 JSON array, written as the vCloud pages arrive.
+	 * @return virtual machines.
 	 */
 	@GET
 	@Path("{node:service:.+}/{criteria}")
 	@Consumes(MediaType.APPLICATION_JSON)
-	public List<VCloudVm> findAllByName(@PathParam("node") final String node,
-			@PathParam("criteria") final String criteria)
-			throws IOException, SAXException, ParserConfigurationException {
+	public Response findAllByName(@PathParam("node") final String node, @PathParam("criteria") final String criteria,
+			@QueryParam("page") @DefaultValue("1") final int page,
+			@QueryParam("rows") @DefaultValue("10") final int rows, @QueryParam("stream") final boolean stream) {
 		// Check the node exists
 		if (nodeRepository.findOneVisible(node, securityHelper.getLogin()) == null) {
-			return Collections.emptyList();
+			return Response.ok(Collections.emptyList()).header(HEADER_TOTAL, 0).build();
 		}
 
-		// Get the VMs and parse them
-		return toVms(
-				getVCloudResource(pvResource.getNodeParameters(node), "/query?type=vm&format=idrecords&filter=name==*"
-						+ criteria + "*&sortAsc=name&fields=name,guestOs&pageSize=10"));
+		final var pageF = Math.max(1, page);
+		final var rowsF = Math.min(Math.max(1, rows), pageSize);
+		final var inventoried = inventory.find(node, criteria);
+		if (inventoried != null) {
+			// Use the local inventory, all the pages are available, only the returned ones are built
+			final var from = (pageF - 1) * rowsF;
+			final var to = stream ? inventoried.size() : from + rowsF;
+			return Response.ok(inventoried.get(from, to)).header(HEADER_TOTAL, inventoried.size()).build();
+		}
+
+		final var parameters = pvResource.getNodeParameters(node);
+		final var processor = newProcessor(parameters);
+		try {
+			// Get the first page to get the total count
+			authenticate(parameters, processor);
+			final var vms = new ArrayList<VCloudVm>();
+			final var first = queryVms(processor, parameters, toSearchQuery(criteria, pageF, rowsF), vms::add);
+			final var total = first == null ? 0 : first.getTotal();
+			if (!stream || first == null || !first.hasNext()) {
+				// All data are available
+				processor.close();
+				return Response.ok(vms).header(HEADER_TOTAL, total).build();
+			}
+
+			// Stream the next pages as they arrive
+			return Response.ok((StreamingOutput) output -> {
+				try (processor; var generator = JSON.createGenerator(output)) {
+					generator.writeStartArray();
+					for (final var vm : vms) {
+						generator.writePOJO(vm);
+					}
+					var current = first;
+					while (current != null && current.hasNext()) {
+						generator.flush();
+						current = queryVms(processor, parameters,
+								toSearchQuery(criteria, current.getPage() + 1, rowsF), vm -> {
+									try {
+										generator.writePOJO(vm);
+									} catch (final IOException e) {
+										throw new UncheckedIOException(e);
+									}
+								});
+					}
+					generator.writeEndArray();
+				}
+			}, MediaType.APPLICATION_JSON).header(HEADER_TOTAL, total).build();
+		} catch (final RuntimeException e) {
+			processor.close();
+			throw e;
+		}
 	}
 
 	/**
-	 * Return a snapshot of the console.
+	 * Return the status of the local VM inventory of a node.
+	 *
+	 * @param node The node identifier.
+	 * @return The status of the local VM inventory.
+	 */
+	@GET
+	@Path("inventory/{node:service:.+}")
+	public VCloudInventoryStatus getInventoryStatus(@PathParam("node") final String node) {
+		// Check the node exists
+		if (nodeRepository.findOneVisible(node, securityHelper.getLogin()) == null) {
+			return new VCloudInventoryStatus(0, 0);
+		}
+		return new VCloudInventoryStatus(inventory.size(node), inventory.getLastSync(node));
+	}
+
+	/**
+	 * Synchronize the local VM inventory of all vCloud nodes. A failed node keeps its previous inventory.
+	 */
+	void synchronizeInventory() {
+		for (final var node : nodeRepository.findAllBy("refined.id", KEY)) {
+			try {
+				synchronizeInventory(node.getId());
+			} catch (final RuntimeException e) {
+				log.warn("Unable to synchronize the vCloud inventory of {}: {}", node.getId(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Synchronize the local VM inventory of a node, page by page. The inventory is unchanged when a page fails.
+	 *
+	 * @param node The node identifier.
+	 */
+	void synchronizeInventory(final String node) {
+		final var parameters = pvResource.getNodeParameters(node);
+		final var vms = new ArrayList<VCloudVm>();
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			var page = 0;
+			VCloudQueryPage current;
+			do {
+				page++;
+				current = queryVms(processor, parameters,
+						"/query?type=vm&format=idrecords&sortAsc=name&page=" + page + "&pageSize=" + pageSize,
+						vms::add);
+				if (current == null) {
+					log.warn("Unable to synchronize the vCloud inventory of {}, page {} failed", node, page);
+					return;
+				}
+			} while (current.hasNext());
+		}
+		inventory.update(node, vms);
+	}
+
+	/**
+	 * Indicate the given VMs are all the VMs of a vApp. The VMs of the vApp are read page by page, and the reading
+	 * stops as soon as the vApp holds more VMs than the given ones.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param vApp       The vApp identifier.
+	 * @param ids        The VM identifiers.
+	 * @return <code>true</code> when the vApp holds exactly the given VMs. <code>false</code> when a page failed.
+	 */
+	private boolean isWholeVApp(final Map<String, String> parameters, final String vApp, final Set<String> ids) {
+		final var vms = new ArrayList<VCloudVm>();
+		final var query = "/query?type=vm&format=idrecords&filter=container==urn:vcloud:vapp:" + vApp + "&pageSize="
+				+ pageSize + "&page=";
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			var page = 0;
+			VCloudQueryPage current;
+			do {
+				page++;
+				current = queryVms(processor, parameters, query + page, vms::add);
+				if (current == null || current.getTotal() != ids.size()) {
+					return false;
+				}
+			} while (current.hasNext());
+		}
+		return vms.size() == ids.size() && vms.stream().allMatch(vm -> ids.contains(vm.getId()));
+	}
+
+	/**
+	 * Return the vCloud query of VMs whose name contains the given criteria.
+	 */
+	private String toSearchQuery(final String criteria, final int page, final int rows) {
+		return "/query?type=vm&format=idrecords&filter=name==*" + criteria
+				+ "*&sortAsc=name&fields=name,guestOs&page=" + page + "&pageSize=" + rows;
+	}
+
+	/**
+	 * Return a snapshot of the console. The latest screenshot is cached for a few seconds, and is not sent again when
+	 * the client already has it.
 	 *
 	 * @param subscription the valid screenshot of the console.
-	 * @return the valid screenshot of the console.
+	 * @param width        The optional thumbnail width. <code>0</code> for the original screenshot.
+	 * @param ifNoneMatch  The optional entity tag known by the client.
+	 * @return the valid screenshot of the console, "304" when not modified or "204" when not available.
 	 */
 	@GET
 	@Path("{subscription:\\d+}/console.png")
 	@Produces("image/png")
-	public StreamingOutput getConsole(@PathParam("subscription") final int subscription) {
+	public Response getConsole(@PathParam("subscription") final int subscription,
+			@QueryParam("width") @DefaultValue("0") final int width,
+			@HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch) {
+		final var frame = getConsoleFrame(subscriptionResource.getParameters(subscription), width);
+		if (frame == null) {
+			return Response.noContent().build();
+		}
+		final var cacheControl = new CacheControl();
+		cacheControl.setPrivate(true);
+		cacheControl.setMaxAge((int) (consoleCache.getTtl() / 1000));
+		final var etag = new EntityTag(frame.etag());
+		if (frame.matches(ifNoneMatch)) {
+			// Same image than the client one
+			return Response.notModified(etag).cacheControl(cacheControl).build();
+		}
+		return Response.ok((StreamingOutput) frame::write).tag(etag).cacheControl(cacheControl).build();
+	}
+
+	/**
+	 * Return the live console, as a stream of the changed screenshots. The viewers of the same VM with the same
+	 * credentials share the same poller, so the screen is fetched once per interval whatever the amount of viewers. The stream holds a request
+	 * thread until its end, so it is only opened on demand: the console popover uses the snapshot of
+	 * {@link #getConsole(int, int, String)}.
+	 *
+	 * @param subscription The subscription identifier.
+	 * @return The <code>multipart/x-mixed-replace</code> stream of PNG screenshots.
+	 */
+	@GET
+	@Path("{subscription:\\d+}/console-stream")
+	@Produces(VCloudConsoleStreamer.MEDIA_TYPE)
+	public Response getConsoleStream(@PathParam("subscription") final int subscription) {
 		final var parameters = subscriptionResource.getParameters(subscription);
-		final var processor = new VCloudCurlProcessor();
-		authenticate(parameters, processor);
+		// Only the viewers sharing the same credentials share the same poller
+		final var key = toScope(parameters) + "##" + parameters.get(PARAMETER_VM);
+		final var cacheControl = new CacheControl();
+		cacheControl.setNoCache(true);
+		cacheControl.setNoStore(true);
+		return Response.ok((StreamingOutput) o -> consoleStreamer.stream(key, () -> loadConsole(parameters), o))
+				.cacheControl(cacheControl).build();
+	}
 
-		// Get the screen thumbnail
+	/**
+	 * Return a snapshot of the console.
+	 *
+	 * @param subscription the valid screenshot of the console.
+	 * @return the valid screenshot of the console. Empty when not available.
+	 */
+	public StreamingOutput getConsole(final int subscription) {
+		final var frame = getConsoleFrame(subscriptionResource.getParameters(subscription), 0);
 		return output -> {
-			final var url = Strings.CS.appendIfMissing(parameters.get(PARAMETER_API), "/") + "vApp/vm-"
-					+ parameters.get(PARAMETER_VM) + "/screen";
-			final var curlRequest = new CurlRequest("GET", url, null, (request, response) -> {
-				if (response.getCode() == HttpServletResponse.SC_OK) {
-					// Copy the stream
-					IOUtils.copy(response.getEntity().getContent(), output);
-					output.flush();
-				}
-				return false;
-			});
-			processor.process(curlRequest);
+			if (frame != null) {
+				// Copy the image
+				frame.write(output);
+			}
 		};
 	}
 
 	/**
-	 * Build a described {@link Vm} bean from an XML VMRecord entry.
+	 * Return the latest screenshot of the console, from the cache when still valid.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param width      The optional thumbnail width. <code>0</code> for the original screenshot.
+	 * @return The screenshot or <code>null</code> when not available.
+	 */
+	private VCloudConsoleCache.Frame getConsoleFrame(final Map<String, String> parameters, final int width) {
+		final var scope = toScope(parameters);
+		final var vm = parameters.get(PARAMETER_VM);
+		var frame = consoleCache.get(scope, vm, 0);
+		if (frame == null) {
+			frame = loadConsole(parameters);
+			if (frame == null) {
+				return null;
+			}
+		}
+		return width > 0 ? consoleCache.getThumbnail(scope, vm, frame, width) : frame;
+	}
+
+	/**
+	 * Fetch the current screenshot of the console and cache it.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @return The screenshot or <code>null</code> when not available.
+	 */
+	private VCloudConsoleCache.Frame loadConsole(final Map<String, String> parameters) {
+		final byte[] screen;
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			screen = getScreen(parameters, processor);
+		}
+		if (ArrayUtils.isEmpty(screen)) {
+			// Not available screenshot is not cached
+			return null;
+		}
+		return consoleCache.put(toScope(parameters), parameters.get(PARAMETER_VM), screen);
+	}
+
+	/**
+	 * Return the screenshot of the console. Concurrent identical requests share the same vCloud request.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param processor  The CURL processor with pre-authenticated token.
+	 * @return The PNG screenshot or <code>null</code> when not available.
+	 */
+	private byte[] getScreen(final Map<String, String> parameters, final VCloudCurlProcessor processor) {
+		final var resource = "/vApp/vm-" + parameters.get(PARAMETER_VM) + "/screen";
+		return singleFlight.execute(toSharedKey(parameters, resource), () -> {
+			final var screen = new AtomicReference<byte[]>();
+			final var curlRequest = new CurlRequest(HttpMethod.GET, toUrl(parameters.get(PARAMETER_API), resource),
+					null, (request, response) -> {
+						if (response.getCode() == HttpServletResponse.SC_OK) {
+							// Read the image
+							screen.set(IOUtils.toByteArray(response.getEntity().getContent()));
+						}
+						return false;
+					});
+			process(parameters, processor, curlRequest);
+			return screen.get();
+		});
+	}
+
+	/**
+	 * Return the key of a read shared by the concurrent identical requests: API URL, credentials and resource path.
+	 * The credentials, password included, are hashed so a request with other credentials is never served the result of
+	 * another one.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param resource   The remote vCloud resource.
+	 * @return The key of a shared read.
+	 */
+	private String toSharedKey(final Map<String, String> parameters, final String resource) {
+		return toScope(parameters) + "##" + resource;
+	}
+
+	/**
+	 * Return the scope of the data read with the given parameters: API URL and SHA-256 hash of the credentials.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @return The scope of the read data.
+	 */
+	private String toScope(final Map<String, String> parameters) {
+		return parameters.get(PARAMETER_API) + "##" + DigestUtils.sha256Hex(toSession(parameters)[1]);
+	}
+
+	/**
+	 * Return the VMs of a vCloud query after an authentication. The <code>VMRecord</code> elements are parsed from the
+	 * response stream without keeping the whole document.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param resource   The remote vCloud query resource.
+	 * @return The parsed VMs. Empty when the query failed.
+	 */
+	private List<VCloudVm> queryVms(final Map<String, String> parameters, final String resource) {
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			return queryVms(processor, parameters, resource);
+		}
+	}
+
+	/**
+	 * Return the VMs of a vCloud query. Authentication should be proceeded before. The processor is not closed.
+	 *
+	 * @param processor  The CURL processor with pre-authenticated token.
+	 * @param parameters The subscription parameters.
+	 * @param resource   The remote vCloud query resource.
+	 * @return The parsed VMs. Empty when the query failed.
 	 */
-	private VCloudVm toVm(final Element record) {
-		final var result = new VCloudVm();
-		result.setId(Strings.CS.removeStart(record.getAttribute("id"), "urn:vcloud:vm:"));
-		result.setName(record.getAttribute("name"));
-		result.setOs(record.getAttribute("guestOs"));
+	private List<VCloudVm> queryVms(final VCloudCurlProcessor processor, final Map<String, String> parameters,
+			final String resource) {
+		final var vms = new ArrayList<VCloudVm>();
+		return queryVms(processor, parameters, resource, vms::add) == null ? Collections.emptyList() : vms;
+	}
 
-		// Optional attributes
-		result.setStorageProfileName(record.getAttribute("storageProfileName"));
-		result.setStatus(EnumUtils.getEnum(VmStatus.class, record.getAttribute("status")));
-		result.setCpu(NumberUtils.toInt(StringUtils.trimToNull(record.getAttribute("numberOfCpus"))));
-		result.setBusy(Boolean.parseBoolean(
-				ObjectUtils.getIfNull(StringUtils.trimToNull(record.getAttribute("isBusy")), "false")));
-		result.setVApp(StringUtils.trimToNull(record.getAttribute("containerName")));
-		result.setVAppId(
-				StringUtils.trimToNull(Strings.CS.removeStart(record.getAttribute("container"), "urn:vcloud:vapp:")));
-		result.setRam(NumberUtils.toInt(StringUtils.trimToNull(record.getAttribute("memoryMB"))));
-		result.setDeployed(Boolean.parseBoolean(
-				ObjectUtils.getIfNull(StringUtils.trimToNull(record.getAttribute("isDeployed")), "false")));
+	/**
+	 * Forward the VMs of a vCloud query to the given consumer as soon as they are parsed from the response stream.
+	 * Authentication should be proceeded before. The processor is not closed.
+	 *
+	 * @param processor  The CURL processor with pre-authenticated token.
+	 * @param parameters The subscription parameters.
+	 * @param resource   The remote vCloud query resource.
+	 * @param consumer   The VM consumer.
+	 * @return The paging attributes of the result. <code>null</code> when the query failed.
+	 */
+	private VCloudQueryPage queryVms(final VCloudCurlProcessor processor, final Map<String, String> parameters,
+			final String resource, final Consumer<VCloudVm> consumer) {
+		final var accept = toQueryAccept(parameters);
+		final var result = queryVms(processor, parameters, resource, consumer, accept);
+		if (processor.getStatus() == HttpServletResponse.SC_NOT_ACCEPTABLE
+				&& !accept.equals(VCloudCurlProcessor.ACCEPT)) {
+			// JSON is not supported by this director, fall back to XML
+			log.info("JSON query records are not supported by {}, use XML", parameters.get(PARAMETER_API));
+			return queryVms(processor, parameters, resource, consumer, VCloudCurlProcessor.ACCEPT);
+		}
 		return result;
 	}
 
 	/**
-	 * Build described beans from a XML result.
+	 * Forward the VMs of a vCloud query requested with the given accepted type. The records are parsed as JSON or XML
+	 * depending on the response type.
+	 */
+	private VCloudQueryPage queryVms(final VCloudCurlProcessor processor, final Map<String, String> parameters,
+			final String resource, final Consumer<VCloudVm> consumer, final String accept) {
+		final var result = new AtomicReference<VCloudQueryPage>();
+		final var url = toUrl(parameters.get(PARAMETER_API), resource);
+		final var request = new CurlRequest(HttpMethod.GET, url, null, (r, response) -> {
+			if (response.getCode() == HttpServletResponse.SC_OK) {
+				// Parse the records directly from the response stream
+				final var start = System.nanoTime();
+				result.set(parseVms(response.getEntity().getContentType(), response.getEntity().getContent(),
+						consumer));
+				metrics.recordParse(url, System.nanoTime() - start);
+				return true;
+			}
+			return false;
+		}, "Accept:" + accept);
+		process(parameters, processor, request);
+		return result.get();
+	}
+
+	/**
+	 * Parse the query records as JSON or XML depending on the response type.
+	 *
+	 * @param contentType The response content type. May be <code>null</code>.
+	 * @param input       The response stream. Not closed by this method.
+	 * @param consumer    The VM consumer.
+	 * @return The paging attributes of the result.
+	 * @throws IOException When the stream cannot be read or is not valid.
+	 */
+	private VCloudQueryPage parseVms(final String contentType, final InputStream input,
+			final Consumer<VCloudVm> consumer) throws IOException {
+		if (VCloudVmJsonParser.isJson(contentType)) {
+			return VCloudVmJsonParser.parse(input, consumer);
+		}
+		return VCloudVmParser.parse(input, consumer);
+	}
+
+	/**
+	 * Return the accepted type of the query records: JSON when enabled for the node, XML otherwise.
 	 */
-	private List<VCloudVm> toVms(final String vmAsXml) throws SAXException, IOException, ParserConfigurationException {
-		final var tags = xml.getTags(vmAsXml, "VMRecord");
-		return IntStream.range(0, tags.getLength()).mapToObj(tags::item).map(n -> (Element) n).map(this::toVm).toList();
+	private String toQueryAccept(final Map<String, String> parameters) {
+		if (BooleanUtils.toBoolean(parameters.get(PARAMETER_JSON))) {
+			return "application/*+json;version=" + jsonVersion;
+		}
+		return VCloudCurlProcessor.ACCEPT;
 	}
 
 	/**
 	 * Return a vCloud's resource after an authentication. Return <code>null</code> when the resource is not found.
-	 * Authentication will be done to get the data.
+	 * Authentication will be done to get the data. Concurrent identical requests share the same vCloud request.
 	 *
 	 * @param parameters The subscription parameters.
 	 * @param resource   The remote vCloud resource.
 	 * @return The remote resource content. May be <code>null</code> with error.
 	 */
 	private String getVCloudResource(final Map<String, String> parameters, final String resource) {
-		return authenticateAndExecute(parameters, HttpMethod.GET, resource);
+		return singleFlight.execute(toSharedKey(parameters, resource),
+				() -> authenticateAndExecute(parameters, HttpMethod.GET, resource));
 	}
 
 	/**
@@ -404,34 +1015,44 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 	 */
 	private String authenticateAndExecute(final Map<String, String> parameters, final String method,
 			final String resource) {
-		final var processor = new VCloudCurlProcessor();
-		authenticate(parameters, processor);
-		return execute(processor, method, parameters.get(PARAMETER_API), resource);
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			return execute(processor, parameters, method, resource);
+		}
 	}
 
 	/**
 	 * Return/execute a vCloud resource. Return <code>null</code> when the resource is not found. Authentication should
-	 * be proceeded before for authenticated query.
+	 * be proceeded before for authenticated query. The processor is not closed, and can be reused for other requests.
 	 *
-	 * @param processor The CURL processor with pre-authenticated token.
-	 * @param method    HTTP method.
-	 * @param url       The remote URL. Trailing <code>/</code> is removed.
-	 * @param resource  The remote resource.
+	 * @param processor  The CURL processor with pre-authenticated token.
+	 * @param parameters The subscription parameters.
+	 * @param method     HTTP method.
+	 * @param resource   The remote resource.
 	 * @return The remote resource content. May be <code>null</code> with error.
 	 */
-	private String execute(final CurlProcessor processor, final String method, final String url,
-			final String resource) {
+	private String execute(final VCloudCurlProcessor processor, final Map<String, String> parameters,
+			final String method, final String resource) {
 		// Get the resource using the preempted authentication
-		final var request = new CurlRequest(method,
-				Strings.CS.appendIfMissing(url, "/") + Strings.CS.removeStart(resource, "/"), null);
+		final var request = new CurlRequest(method, toUrl(parameters.get(PARAMETER_API), resource), null);
 		request.setSaveResponse(true);
 
 		// Execute the requests
-		processor.process(request);
-		processor.close();
+		process(parameters, processor, request);
 		return request.getResponse();
 	}
 
+	/**
+	 * Return the full URL of a vCloud resource.
+	 *
+	 * @param url      The remote URL. Trailing <code>/</code> is removed.
+	 * @param resource The remote resource.
+	 * @return The full URL.
+	 */
+	private String toUrl(final String url, final String resource) {
+		return Strings.CS.appendIfMissing(url, "/") + Strings.CS.removeStart(resource, "/");
+	}
+
 	@Override
 	public String getKey() {
 		return VCloudPluginResource.KEY;
@@ -457,26 +1078,55 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 	}
 
 	@Override
-	public String getLastVersion() throws IOException {
-		// Get the download JSON from the default repository
-		try (var curl = new CurlProcessor()) {
-			final var versionsAsString = curl.get(
-					"https://customerconnect.vmware.com/channel/public/api/v1.0/products/getProductHeader?category=datacenter_cloud_infrastructure&product=vmware_vcloud_suite&version=2019");
-			final var versions = new ObjectMapperTrim().readValue(versionsAsString, VCloudVersions.class);
-			return versions.getVersions().stream()
-					.map(o -> Objects.toString(o.get("id"), "0"))
-					.filter(v -> !v.isBlank())
-					.sorted().findFirst().orElse(null);
-		}
+	public String getLastVersion() {
+		return lastVersion.get();
 	}
 
 	@Override
 	public boolean checkStatus(final Map<String, String> parameters) throws Exception {
-		// Status is UP <=> Administration access is UP (if defined)
-		validateAdminAccess(parameters);
+		// Status is UP <=> Administration access is UP (if defined). The checks are cached by credentials.
+		final var key = toSharedKey(parameters, "");
+		final var probe = probes.get(key);
+		final var now = System.currentTimeMillis();
+		if (probe != null && now - probe.checked() < statusTtl) {
+			// Recently checked
+			return true;
+		}
+		if (probe == null || now - probe.admin() >= adminTtl) {
+			// Full check of the administration access
+			validateAdminAccess(parameters);
+			probes.put(key, new Probe(now, now));
+		} else {
+			// Lightweight check of the session
+			probeSession(parameters);
+			probes.put(key, new Probe(now, probe.admin()));
+		}
 		return true;
 	}
 
+	/**
+	 * Check the session is valid with a minimal request.
+	 *
+	 * @param parameters Subscription parameters.
+	 */
+	private void probeSession(final Map<String, String> parameters) {
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+			final var request = new CurlRequest(HttpMethod.GET, toUrl(parameters.get(PARAMETER_API), "/session"), null,
+					(r, response) -> response.getCode() == HttpServletResponse.SC_OK);
+			if (!process(parameters, processor, request)) {
+				throw new ValidationJsonException(PARAMETER_API, "vcloud-login");
+			}
+		}
+	}
+
+	/**
+	 * Forget the successful status checks.
+	 */
+	void clearStatus() {
+		probes.clear();
+	}
+
 	@Override
 	public SubscriptionStatusWithData checkSubscriptionStatus(final int subscription, final String node,
 			final Map<String, String> parameters) throws Exception { // NOSONAR
@@ -486,15 +1136,581 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 		return status;
 	}
 
+	/**
+	 * Return the status of the given subscriptions of a visible node. The subscription parameters are loaded with a
+	 * single query over the node parameters, the VMs are fetched with a few queries per API URL, and the schedules are
+	 * counted with a single grouped query. The visibility is checked once per project.
+	 *
+	 * @param node          The node identifier. Subscriptions of another node or of a not visible project are
+	 *                      ignored.
+	 * @param subscriptions The subscription identifiers.
+	 * @return The status by subscription. Subscriptions whose VM is not found are not included.
+	 */
+	@GET
+	@Path("status/{node:service:.+}")
+	public Map<Integer, SubscriptionStatusWithData> checkSubscriptionStatus(@PathParam("node") final String node,
+			@QueryParam("subscription") final List<Integer> subscriptions) {
+		final var distinct = new LinkedHashSet<>(subscriptions);
+		if (distinct.isEmpty() || nodeRepository.findOneVisible(node, securityHelper.getLogin()) == null) {
+			return Collections.emptyMap();
+		}
+
+		// The subscription parameters override the node ones
+		final var nodeParameters = pvResource.getNodeParameters(node);
+		final var values = new HashMap<Integer, Map<String, String>>();
+		final var visible = new HashMap<Integer, Boolean>();
+		for (final var value : parameterValueRepository.findAllBySubscriptions(node, distinct)) {
+			if (!visible.computeIfAbsent((Integer) value[3],
+					p -> projectRepository.findOneVisible(p, securityHelper.getLogin()) != null)) {
+				// Subscription of a not visible project
+				continue;
+			}
+			values.computeIfAbsent((Integer) value[0], s -> new HashMap<>(nodeParameters)).put((String) value[1],
+					(String) value[2]);
+		}
+		final var parameters = new LinkedHashMap<Integer, Map<String, String>>();
+		distinct.stream().filter(values::containsKey).forEach(s -> parameters.put(s, values.get(s)));
+		final var vms = getVmDetailsGrouped(parameters);
+		if (vms.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		final var schedules = scheduleRepository.countBySubscriptions(vms.keySet()).stream()
+				.collect(Collectors.toMap(c -> (Integer) c[0], c -> ((Number) c[1]).intValue()));
+		final var result = new LinkedHashMap<Integer, SubscriptionStatusWithData>();
+		vms.forEach((subscription, vm) -> {
+			final var status = new SubscriptionStatusWithData();
+			status.put("vm", vm);
+			status.put("schedules", schedules.getOrDefault(subscription, 0));
+			result.put(subscription, status);
+		});
+		return result;
+	}
+
+	/**
+	 * Execute an operation on a VM. The scheduled executions are dispatched over a short window, see
+	 * {@link VCloudDispatcher}: this call then returns immediately, and the outcome of the execution is saved once
+	 * released.
+	 */
 	@Override
 	public void execute(final VmExecution execution) throws Exception {
-		final int subscription = execution.getSubscription().getId();
+		final var parameters = subscriptionResource.getParametersNoCheck(execution.getSubscription().getId());
+		if (!dispatcher.isEnabled()) {
+			execute(execution, parameters);
+			return;
+		}
+		dispatcher.dispatch(
+				VCloudRateLimiter.toKey(parameters.get(PARAMETER_API), parameters.get(PARAMETER_ORGANIZATION)), () -> {
+					try {
+						execute(execution, parameters);
+					} catch (final RuntimeException e) {
+						log.warn("Dispatched execution of {} on subscription {} failed", execution.getOperation(),
+								execution.getSubscription().getId(), e);
+						execution.setSucceed(false);
+						execution.setStatusText(StringUtils.abbreviate(e.getMessage(), 250));
+					}
+					taskTracker.report(execution);
+				});
+	}
+
+	/**
+	 * A bulk execution with its resolved subscription parameters and the current state of its VM.
+	 *
+	 * @param execution  The execution to run.
+	 * @param parameters The subscription parameters.
+	 * @param result     The outcome to complete.
+	 * @param vm         The current state of the VM.
+	 */
+	private record BulkItem(VmExecution execution, Map<String, String> parameters, VCloudExecutionResult result,
+			VCloudVm vm) {
+	}
+
+	/**
+	 * Execute the given executions in parallel on virtual threads. The amount of concurrent requests against the same
+	 * vCloud API is limited, so a single director is not flooded by a large schedule. A failed execution does not stop
+	 * the other ones. When all the VMs of a vApp are targeted with the same operation, a single vApp action is sent
+	 * instead of one action per VM.
+	 *
+	 * @param executions The executions to run. The subscription and the requested operation must be set.
+	 * @return The report holding the outcome of each execution, in the same order.
+	 */
+	public VCloudExecutionReport execute(final List<VmExecution> executions) {
+		final var start = System.currentTimeMillis();
+		final var results = new ArrayList<VCloudExecutionResult>(executions.size());
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			final var items = new ArrayList<CompletableFuture<BulkItem>>(executions.size());
+			for (final var execution : executions) {
+				final var result = newResult(execution);
+				results.add(result);
+				try {
+					// Resolve the parameters in the caller thread, holding the transactional context
+					final var parameters = subscriptionResource
+							.getParametersNoCheck(execution.getSubscription().getId());
+					items.add(CompletableFuture.supplyAsync(() -> newBulkItem(execution, parameters, result),
+							executor));
+				} catch (final RuntimeException e) {
+					result.setError(toError(e));
+				}
+			}
+
+			// Group the executions by vApp and requested operation
+			final var groups = new LinkedHashMap<String, List<BulkItem>>();
+			items.stream().map(CompletableFuture::join).filter(Objects::nonNull)
+					.forEach(i -> groups.computeIfAbsent(toBulkKey(i), k -> new ArrayList<>()).add(i));
+			CompletableFuture.allOf(groups.values().stream()
+					.map(g -> CompletableFuture.supplyAsync(() -> g.size() > 1 && executeVApp(g), executor)
+							.thenCompose(done -> done ? CompletableFuture.completedFuture(null)
+									: CompletableFuture.allOf(g.stream()
+											.map(i -> CompletableFuture.runAsync(() -> execute(i), executor))
+											.toArray(CompletableFuture[]::new))))
+					.toArray(CompletableFuture[]::new)).join();
+		}
+		final var report = new VCloudExecutionReport();
+		report.setResults(results);
+		report.setDuration(System.currentTimeMillis() - start);
+		log.info("Bulk execution of {} VMs completed in {}ms, {} failed", executions.size(), report.getDuration(),
+				report.getFailed());
+		return report;
+	}
+
+	/**
+	 * Return a new result of the given execution, not yet executed.
+	 */
+	private VCloudExecutionResult newResult(final VmExecution execution) {
+		final var result = new VCloudExecutionResult();
+		result.setSubscription(execution.getSubscription().getId());
+		result.setRequested(execution.getOperation());
+		return result;
+	}
+
+	/**
+	 * Return the error message of a failed execution.
+	 */
+	private String toError(final Exception e) {
+		return StringUtils.defaultIfBlank(e.getMessage(), e.getClass().getSimpleName());
+	}
+
+	/**
+	 * Return the bulk item of an execution with the current state of its VM.
+	 *
+	 * @return The bulk item. <code>null</code> when the VM cannot be resolved, and the result is completed.
+	 */
+	private BulkItem newBulkItem(final VmExecution execution, final Map<String, String> parameters,
+			final VCloudExecutionResult result) {
+		try {
+			return new BulkItem(execution, parameters, result,
+					withPermit(parameters, List.of(result), () -> getFreshVm(parameters)));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.setError(toError(e));
+		} catch (final RuntimeException e) {
+			log.info("Bulk execution of {} failed for subscription {}: {}", result.getRequested(),
+					result.getSubscription(), e.getMessage());
+			result.setError(toError(e));
+		}
+		return null;
+	}
+
+	/**
+	 * Return the grouping key of a bulk item: the API, the credentials, the vApp and the requested operation. The VMs
+	 * without vApp are not grouped.
+	 */
+	private String toBulkKey(final BulkItem item) {
+		final var vApp = item.vm().getVAppId();
+		if (vApp == null) {
+			return toSharedKey(item.parameters(), "/vApp/vm-" + item.vm().getId()) + "##"
+					+ item.result().getSubscription();
+		}
+		return toSharedKey(item.parameters(), "/vApp/vapp-" + vApp) + "##" + item.execution().getOperation();
+	}
+
+	/**
+	 * Run a bulk step within the permits of its vCloud API. The waiting time is added to the given results.
+	 */
+	private <T> T withPermit(final Map<String, String> parameters, final List<VCloudExecutionResult> results,
+			final Supplier<T> step) throws InterruptedException {
+		final var bulkhead = bulkheads.computeIfAbsent(parameters.get(PARAMETER_API),
+				a -> new Semaphore(bulkConcurrency, true));
+		final var queued = System.currentTimeMillis();
+		bulkhead.acquire();
+		final var wait = System.currentTimeMillis() - queued;
+		results.forEach(r -> r.setWait(r.getWait() + wait));
+		try {
+			return step.get();
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	/**
+	 * Execute a single bulk item on its VM, and complete its result.
+	 */
+	private void execute(final BulkItem item) {
+		final var result = item.result();
+		final var start = System.currentTimeMillis();
+		try {
+			withPermit(item.parameters(), List.of(result), () -> {
+				execute(item.execution(), item.parameters(), item.vm());
+				return null;
+			});
+			result.setExecuted(item.execution().getOperation());
+			result.setSucceed(true);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.setError(toError(e));
+		} catch (final RuntimeException e) {
+			log.info("Bulk execution of {} failed for subscription {}: {}", result.getRequested(),
+					result.getSubscription(), e.getMessage());
+			result.setError(toError(e));
+		} finally {
+			result.setDuration(System.currentTimeMillis() - start);
+			result.setVm(item.execution().getVm());
+		}
+	}
+
+	/**
+	 * Execute a group of bulk items targeting VMs of the same vApp with the same requested operation, with a single
+	 * vApp action. The group must cover all the VMs of the vApp, and all of them must need the same final operation.
+	 *
+	 * @param group The bulk items of the same vApp.
+	 * @return <code>true</code> when the group has been executed, even with a failure. <code>false</code> when the
+	 *         VMs must be executed one by one.
+	 */
+	private boolean executeVApp(final List<BulkItem> group) {
+		final var first = group.getFirst();
+		final var parameters = first.parameters();
+		final var vApp = first.vm().getVAppId();
+		final var results = group.stream().map(BulkItem::result).toList();
+		final var start = System.currentTimeMillis();
+		try {
+			return withPermit(parameters, results, () -> {
+				// Check the group covers all the VMs of the vApp, with the same operation
+				final var ids = group.stream().map(i -> i.vm().getId()).collect(Collectors.toSet());
+				final var operations = group.stream()
+						.map(i -> failSafeOperation(i.vm().getStatus(), i.execution().getOperation())).distinct()
+						.toList();
+				if (ids.size() != group.size() || operations.size() != 1 || operations.getFirst() == null
+						|| !isWholeVApp(parameters, vApp, ids)) {
+					log.info("Bulk execution of {} on vApp {} is executed VM by VM", first.execution().getOperation(),
+							vApp);
+					return false;
+				}
+
+				// Share the VM details to the executions, and send the vApp action
+				group.forEach(i -> toAction(i.execution(), i.parameters(), i.vm()));
+				final var executions = group.stream().map(BulkItem::execution).toList();
+				final var action = newAction(operations.getFirst(), "/vApp/vapp-" + vApp);
+				log.info("Bulk execution of {} on the {} VMs of vApp {} with a single action", operations.getFirst(),
+						group.size(), vApp);
+				try {
+					final var response = post(parameters, action);
+					checkSchedulerResponse(response);
+					taskTracker.track(executions, response, href -> getVCloudResource(parameters,
+							"/task/" + StringUtils.substringAfterLast(href, "/task/")),
+							t -> group.forEach(i -> vmCache.invalidate(parameters.get(PARAMETER_API), i.vm().getId())));
+					results.forEach(r -> {
+						r.setExecuted(operations.getFirst());
+						r.setSucceed(true);
+					});
+				} catch (final RuntimeException e) {
+					log.info("Bulk execution of {} failed for vApp {}: {}", operations.getFirst(), vApp,
+							e.getMessage());
+					results.forEach(r -> r.setError(toError(e)));
+				}
+				return true;
+			});
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			results.forEach(r -> r.setError(toError(e)));
+			return true;
+		} catch (final RuntimeException e) {
+			// The vApp cannot be inspected
+			log.info("Unable to inspect the vApp {}, executed VM by VM: {}", vApp, e.getMessage());
+			return false;
+		} finally {
+			final var duration = System.currentTimeMillis() - start;
+			group.forEach(i -> {
+				i.result().setDuration(duration);
+				i.result().setVm(i.execution().getVm());
+			});
+		}
+	}
+
+	/**
+	 * Return the current state of the VM, never from the cache.
+	 */
+	private VCloudVm getFreshVm(final Map<String, String> parameters) {
+		vmCache.invalidate(parameters.get(PARAMETER_API), parameters.get(PARAMETER_VM));
+		return getVmDetails(parameters);
+	}
+
+	/**
+	 * Execute an operation on the VM of the given subscription parameters.
+	 *
+	 * @param execution  The execution to complete.
+	 * @param parameters The subscription parameters.
+	 */
+	private void execute(final VmExecution execution, final Map<String, String> parameters) {
+		// First get VM state, never from the cache since the operation depends on it
+		execute(execution, parameters, getFreshVm(parameters));
+	}
+
+	/**
+	 * Execute an operation on the VM of the given subscription parameters.
+	 *
+	 * @param execution  The execution to complete.
+	 * @param parameters The subscription parameters.
+	 * @param vm         The current state of the VM.
+	 */
+	private void execute(final VmExecution execution, final Map<String, String> parameters, final VCloudVm vm) {
+		final var action = toAction(execution, parameters, vm);
+		if (action != null) {
+			track(execution, parameters, post(parameters, action));
+		}
+	}
+
+	/**
+	 * Send a vCloud action.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param action     The action to send.
+	 * @return The response of the action. <code>null</code> when failed.
+	 */
+	private String post(final Map<String, String> parameters, final Action action) {
+		if (action.content() == null) {
+			// Operation does not require to undeploy the VM
+			return authenticateAndExecute(parameters, HttpMethod.POST, action.resource());
+		}
+
+		// The requested operation needs the VM to be undeployed
+		final var request = new CurlRequest(HttpMethod.POST, toUrl(parameters.get(PARAMETER_API), action.resource()),
+				action.content(), "Content-Type:" + action.contentType());
+		request.setSaveResponse(true);
+
+		// Use the preempted authentication
+		try (var processor = newProcessor(parameters)) {
+			authenticate(parameters, processor);
+
+			// Execute the request
+			process(parameters, processor, request);
+		}
+		return request.getResponse();
+	}
+
+	/**
+	 * Return the details of the virtual machine without blocking the caller. See {@link #getVmDetails(Map)}.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @return The future virtual machine details, failed when the VM is not found.
+	 */
+	public CompletableFuture<VCloudVm> getVmDetailsAsync(final Map<String, String> parameters) {
+		final var id = parameters.get(PARAMETER_VM);
+		final var scope = toScope(parameters);
+		final var cached = vmCache.get(scope, id);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		final var since = vmCache.begin();
+		return queryVmsAsync(parameters,
+				"/query?type=vm&format=idrecords&filter=id==urn:vcloud:vm:" + id + "&pageSize=1").thenApply(vms -> {
+					if (vms.isEmpty()) {
+						// Invalid id
+						throw new ValidationJsonException(PARAMETER_VM, "vcloud-vm", id);
+					}
+					vmCache.put(scope, vms.getFirst(), since);
+					return vms.getFirst();
+				});
+	}
+
+	/**
+	 * Find the virtual machines matching to the given criteria without blocking the caller. See
+	 * {@link #findAllByName(String, String)}.
+	 *
+	 * @param node     the node to be tested with given parameters.
+	 * @param criteria the search criteria. Case is insensitive.
+	 * @return The future virtual machines.
+	 */
+	public CompletableFuture<List<VCloudVm>> findAllByNameAsync(final String node, final String criteria) {
+		// Check the node exists
+		if (nodeRepository.findOneVisible(node, securityHelper.getLogin()) == null) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+
+		// Use the local inventory when available
+		final var inventoried = inventory.find(node, criteria);
+		if (inventoried != null) {
+			return CompletableFuture.completedFuture(inventoried.get(0, 10));
+		}
+		return queryVmsAsync(pvResource.getNodeParameters(node), toSearchQuery(criteria, 1, 10));
+	}
+
+	/**
+	 * Execute an operation on a VM without blocking the caller. See {@link #execute(VmExecution)}.
+	 *
+	 * @param execution The execution to run. The subscription and the requested operation must be set.
+	 * @return The future completed execution, failed when the vCloud action failed.
+	 */
+	public CompletableFuture<VmExecution> executeAsync(final VmExecution execution) {
+		final var parameters = subscriptionResource.getParametersNoCheck(execution.getSubscription().getId());
+
+		// First get VM state, never from the cache since the operation depends on it
+		vmCache.invalidate(parameters.get(PARAMETER_API), parameters.get(PARAMETER_VM));
+		return getVmDetailsAsync(parameters).thenCompose(vm -> {
+			final var action = toAction(execution, parameters, vm);
+			if (action == null) {
+				return CompletableFuture.completedFuture(execution);
+			}
+			return requestAsync(parameters, HttpMethod.POST, action.resource(), action.content(),
+					action.contentType()).thenApply(response -> {
+						track(execution, parameters, isSuccess(response) ? response.getBodyText() : null);
+						return execution;
+					});
+		});
+	}
+
+	/**
+	 * Return the VMs of a vCloud query without blocking the caller.
+	 *
+	 * @param parameters The subscription parameters.
+	 * @param resource   The remote vCloud query resource.
+	 * @return The future parsed VMs. Empty when the query failed.
+	 */
+	private CompletableFuture<List<VCloudVm>> queryVmsAsync(final Map<String, String> parameters,
+			final String resource) {
+		// Parse out of the I/O threads
+		final var accept = toQueryAccept(parameters);
+		return requestAsync(parameters, HttpMethod.GET, resource, null, null, accept).thenCompose(response -> {
+			if (response.getCode() == HttpServletResponse.SC_NOT_ACCEPTABLE
+					&& !accept.equals(VCloudCurlProcessor.ACCEPT)) {
+				// JSON is not supported by this director, fall back to XML
+				log.info("JSON query records are not supported by {}, use XML", parameters.get(PARAMETER_API));
+				return requestAsync(parameters, HttpMethod.GET, resource, null, null, VCloudCurlProcessor.ACCEPT);
+			}
+			return CompletableFuture.completedFuture(response);
+		}).thenApplyAsync(response -> {
+			if (!isSuccess(response) || response.getBodyBytes() == null) {
+				return Collections.emptyList();
+			}
+			final var start = System.nanoTime();
+			try {
+				final var vms = new ArrayList<VCloudVm>();
+				parseVms(response.getContentType() == null ? null : response.getContentType().toString(),
+						new ByteArrayInputStream(response.getBodyBytes()), vms::add);
+				metrics.recordParse(toUrl(parameters.get(PARAMETER_API), resource), System.nanoTime() - start);
+				return vms;
+			} catch (final IOException e) {
+				log.info("Invalid vCloud query result of {}: {}", resource, e.getMessage());
+				return Collections.emptyList();
+			}
+		});
+	}
+
+	/**
+	 * Indicate the response is a success.
+	 */
+	private boolean isSuccess(final SimpleHttpResponse response) {
+		return response.getCode() >= HttpServletResponse.SC_OK
+				&& response.getCode() < HttpServletResponse.SC_MULTIPLE_CHOICES;
+	}
+
+	/**
+	 * Execute a vCloud request without blocking the caller. When the session has expired, the token is invalidated,
+	 * and the request is executed once again with a new session. When the rate is limited, the request is delayed
+	 * until its turn, and is retried when vCloud throttles it.
+	 *
+	 * @param parameters  The subscription parameters.
+	 * @param method      HTTP method.
+	 * @param resource    The remote resource.
+	 * @param content     The request body. May be <code>null</code>.
+	 * @param contentType The request body type. May be <code>null</code> when there is no body.
+	 * @return The future response, whatever the status.
+	 */
+	private CompletableFuture<SimpleHttpResponse> requestAsync(final Map<String, String> parameters,
+			final String method, final String resource, final String content, final String contentType) {
+		return requestAsync(parameters, method, resource, content, contentType, VCloudCurlProcessor.ACCEPT);
+	}
+
+	private CompletableFuture<SimpleHttpResponse> requestAsync(final Map<String, String> parameters,
+			final String method, final String resource, final String content, final String contentType,
+			final String accept) {
+		return requestAsync(parameters, method, resource, content, contentType, accept, true, 0);
+	}
+
+	private CompletableFuture<SimpleHttpResponse> requestAsync(final Map<String, String> parameters,
+			final String method, final String resource, final String content, final String contentType,
+			final String accept, final boolean retry, final int throttled) {
+		final var session = toSession(parameters);
+		final var url = toUrl(parameters.get(PARAMETER_API), resource);
+		final var rateKey = toRateKey(parameters);
+		return sessionManager.getTokenAsync(session[0], session[1]).thenCompose(token -> {
+			final var builder = SimpleRequestBuilder.create(method).setUri(url)
+					.addHeader("x-vcloud-authorization", token).addHeader("Accept", accept);
+			if (content != null) {
+				builder.setBody(content, ContentType.parse(contentType));
+			}
+
+			// Wait for the turn without blocking, then fail fast when the endpoint is not available. The circuit is
+			// checked last, so a throttled request does not hold the trial of a half-open circuit.
+			final var wait = rateLimiter.reserve(rateKey);
+			return CompletableFuture.runAsync(() -> {
+			}, CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS)).thenCompose(v -> {
+				breaker.acquire(url);
+				final var start = System.nanoTime();
+				final var future = asyncClient.execute(builder.build());
+				future.whenComplete((response, e) -> {
+					final var status = response == null ? 0 : response.getCode();
+					breaker.record(url, status);
+					rateLimiter.record(rateKey, status,
+							response == null ? 0 : VCloudRateLimiter.toRetryAfter(response));
+				});
+				return future.thenCompose(response -> {
+					metrics.recordRequest(method, url, response.getCode(),
+							response.getBodyBytes() == null ? 0 : response.getBodyBytes().length,
+							System.nanoTime() - start);
+					if (retry && response.getCode() == HttpServletResponse.SC_UNAUTHORIZED) {
+						// Expired session, retry once with a new session
+						sessionManager.invalidate(session[0], session[1]);
+						return requestAsync(parameters, method, resource, content, contentType, accept, false, throttled);
+					}
+					if (VCloudRateLimiter.isThrottled(response.getCode()) && throttled < rateLimiter.getRetries()) {
+						// Throttled request, retry at the next turn
+						return requestAsync(parameters, method, resource, content, contentType, accept, retry,
+								throttled + 1);
+					}
+					return CompletableFuture.completedFuture(response);
+				});
+			});
+		});
+	}
+
+	/**
+	 * Return the rate limiter bucket key of the given parameters.
+	 */
+	private String toRateKey(final Map<String, String> parameters) {
+		return VCloudRateLimiter.toKey(parameters.get(PARAMETER_API), parameters.get(PARAMETER_ORGANIZATION));
+	}
+
+	/**
+	 * A vCloud power action.
+	 *
+	 * @param resource    The vCloud action resource.
+	 * @param content     The request body. <code>null</code> when there is no body.
+	 * @param contentType The request body type. <code>null</code> when there is no body.
+	 */
+	private record Action(String resource, String content, String contentType) {
+	}
+
+	/**
+	 * Compute the vCloud action of the given execution, depending on the current state of the VM. The execution is
+	 * updated with the VM name, its current state and the final operation.
+	 *
+	 * @param execution  The execution to complete.
+	 * @param parameters The subscription parameters.
+	 * @param vm         The current state of the VM.
+	 * @return The action to execute. <code>null</code> when the operation is useless.
+	 */
+	private Action toAction(final VmExecution execution, final Map<String, String> parameters, final VCloudVm vm) {
 		final var operation = execution.getOperation();
-		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
 		final var vmUrl = "/vApp/vm-" + parameters.get(PARAMETER_VM);
-
-		// First get VM state
-		final var vm = getVmDetails(parameters);
 		final var status = vm.getStatus();
 
 		// Share the VM name and current status to the execution
@@ -508,36 +1724,51 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 			// Final operation is considered as useless
 			log.info("Requested operation {} is marked as useless considering the status {} of vm {}", operation,
 					status, parameters.get(PARAMETER_VM));
-			return;
+			return null;
 		}
 
-		final var action = MapUtils.getObject(OPERATION_TO_VCLOUD, operationF,
-				operationF.name().toLowerCase(Locale.ENGLISH));
+		// The state of the VM is about to change
+		vmCache.invalidate(parameters.get(PARAMETER_API), parameters.get(PARAMETER_VM));
+		return newAction(operationF, vmUrl);
+	}
+
+	/**
+	 * Return the vCloud action of a final operation.
+	 *
+	 * @param operation The final operation.
+	 * @param url       The target resource, a VM or a vApp.
+	 * @return The action to execute.
+	 */
+	private Action newAction(final VmOperation operation, final String url) {
+		final var action = MapUtils.getObject(OPERATION_TO_VCLOUD, operation,
+				operation.name().toLowerCase(Locale.ENGLISH));
 
 		// Check if undeployment is requested to shut down completely the VM
-		if (operationF == VmOperation.SHUTDOWN || operationF == VmOperation.OFF) {
+		if (operation == VmOperation.SHUTDOWN || operation == VmOperation.OFF) {
 			// The requested operation needs the VM to be undeployed
-			final var content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><UndeployVAppParams xmlns=\"http://www.vmware.com/vcloud/v1.5\"><UndeployPowerAction>"
-					+ action + "</UndeployPowerAction></UndeployVAppParams>";
-			final var url = Strings.CS.removeEnd(parameters.get(PARAMETER_API), "/");
-			final var request = new CurlRequest(HttpMethod.POST, url + vmUrl + "/action/undeploy", content,
-					"Content-Type:application/vnd.vmware.vcloud.undeployVAppParams+xml");
-			request.setSaveResponse(true);
-
-			// Use the preempted authentication
-			final var processor = new VCloudCurlProcessor();
-			authenticate(parameters, processor);
+			return new Action(url + "/action/undeploy",
+					"<?xml version=\"1.0\" encoding=\"UTF-8\"?><UndeployVAppParams xmlns=\"http://www.vmware.com/vcloud/v1.5\"><UndeployPowerAction>"
+							+ action + "</UndeployPowerAction></UndeployVAppParams>",
+					"application/vnd.vmware.vcloud.undeployVAppParams+xml");
+		}
 
-			// Execute the request
-			processor.process(request);
-			processor.close();
+		// Operation does not require to undeploy the VM
+		return new Action(url + "/power/action/" + action, null, null);
+	}
 
-			checkSchedulerResponse(request.getResponse());
-		} else {
-			// Operation does not require to undeploy the VM
-			checkSchedulerResponse(
-					authenticateAndExecute(parameters, HttpMethod.POST, vmUrl + "/power/action/" + action));
-		}
+	/**
+	 * Check the response of a vCloud action, and track the returned task in background. The VM state is refreshed once
+	 * the task is completed.
+	 *
+	 * @param execution  The execution to update with the outcome of the task.
+	 * @param parameters The subscription parameters.
+	 * @param response   The response of the vCloud action.
+	 */
+	private void track(final VmExecution execution, final Map<String, String> parameters, final String response) {
+		checkSchedulerResponse(response);
+		taskTracker.track(execution, response,
+				href -> getVCloudResource(parameters, "/task/" + StringUtils.substringAfterLast(href, "/task/")),
+				t -> vmCache.invalidate(parameters.get(PARAMETER_API), parameters.get(PARAMETER_VM)));
 	}
 
 	/**
@@ -559,7 +1790,7 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 	 * @return The failsafe operation suiting to the current status of the VM. Return <code>null</code> when the
 	 * computed operation is irrelevant.
 	 */
-	private VmOperation failSafeOperation(final VmStatus status, final VmOperation operation) {
+	VmOperation failSafeOperation(final VmStatus status, final VmOperation operation) {
 		if (FAILSAFE_OPERATIONS.get(status).containsKey(operation)) {
 			// Mapped operation
 			return FAILSAFE_OPERATIONS.get(status).get(operation);
@@ -584,6 +1815,7 @@ public class VCloudPluginResource extends AbstractToolPluginResource
 
 	@Override
 	public void afterPropertiesSet() {
+		inventory.start(this::synchronizeInventory);
 		OPERATION_TO_VCLOUD.put(VmOperation.OFF, "powerOff");
 		OPERATION_TO_VCLOUD.put(VmOperation.ON, "powerOn");
 
@@ -0,0 +1,39 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Paging attributes of a vCloud <code>QueryResultRecords</code> document.
+ */
+@Getter
+@Setter
+public class VCloudQueryPage {
+
+	/**
+	 * Total amount of records matching the query, all pages included.
+	 */
+	private int total;
+
+	/**
+	 * Page number, starting from 1.
+	 */
+	private int page;
+
+	/**
+	 * Maximal amount of records of this page.
+	 */
+	private int pageSize;
+
+	/**
+	 * Indicates there are more records after this page.
+	 *
+	 * @return <code>true</code> when there are more records after this page.
+	 */
+	public boolean hasNext() {
+		return (long) page * pageSize < total;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.MessageHeaders;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adaptive client-side rate limiter by vCloud endpoint and organization. Each bucket starts at the configured rate, is
+ * halved when vCloud throttles the requests with a 429 or 503 response, and grows back additively with the successful
+ * requests. A "Retry-After" delay blocks the bucket until it is elapsed. The requests exceeding the rate wait their
+ * turn within a bounded delay instead of failing.
+ */
+@Component
+@Slf4j
+public class VCloudRateLimiter {
+
+	/**
+	 * Maximal amount of requests per second by endpoint and organization. <code>0</code> disables the limiter.
+	 */
+	@Value("${saas.service-vm-vcloud-rate-limit:20}")
+	private double limit;
+
+	/**
+	 * Minimal amount of requests per second, whatever the throttling.
+	 */
+	@Value("${saas.service-vm-vcloud-rate-min:0.5}")
+	private double min;
+
+	/**
+	 * Maximal delay in milliseconds a request waits for its turn.
+	 */
+	@Value("${saas.service-vm-vcloud-rate-wait:60000}")
+	private long maxWait;
+
+	/**
+	 * Maximal amount of retries of a throttled request.
+	 */
+	@Getter
+	@Value("${saas.service-vm-vcloud-rate-retries:3}")
+	private int retries;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	/**
+	 * Buckets by endpoint and organization.
+	 */
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	/**
+	 * Mutable token bucket. Guarded by its own monitor.
+	 */
+	private static class Bucket {
+
+		/**
+		 * Current rate in requests per second.
+		 */
+		private double rate;
+
+		/**
+		 * Available tokens. Negative when requests are queued.
+		 */
+		private double tokens;
+
+		/**
+		 * Timestamp of the last refill.
+		 */
+		private long refilled;
+
+		/**
+		 * Timestamp until which vCloud asked to wait.
+		 */
+		private long blocked;
+	}
+
+	/**
+	 * Return the bucket key of the given endpoint and organization.
+	 *
+	 * @param api          Any URL of the vCloud endpoint.
+	 * @param organization The vCloud organization.
+	 * @return The bucket key.
+	 */
+	static String toKey(final String api, final String organization) {
+		return VCloudConnectionManager.toEndpoint(api) + "##" + StringUtils.trimToEmpty(organization);
+	}
+
+	/**
+	 * Indicate the given HTTP status denotes a throttled request.
+	 *
+	 * @param status The HTTP status.
+	 * @return <code>true</code> for 429 and 503 status.
+	 */
+	static boolean isThrottled(final int status) {
+		return status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE;
+	}
+
+	/**
+	 * Return the delay of a "Retry-After" header.
+	 *
+	 * @param retryAfter The header value, in seconds or as an HTTP date. May be <code>null</code>.
+	 * @return The delay in milliseconds. <code>0</code> when not defined or invalid.
+	 */
+	static long toRetryAfter(final String retryAfter) {
+		if (StringUtils.isBlank(retryAfter)) {
+			return 0;
+		}
+		if (StringUtils.isNumeric(retryAfter.trim())) {
+			return Long.parseLong(retryAfter.trim()) * 1000;
+		}
+		final var date = DateUtils.parseStandardDate(retryAfter.trim());
+		return date == null ? 0 : Math.max(0, date.toEpochMilli() - System.currentTimeMillis());
+	}
+
+	/**
+	 * Return the delay of the "Retry-After" header of a response.
+	 *
+	 * @param response The response headers.
+	 * @return The delay in milliseconds. <code>0</code> when not defined or invalid.
+	 */
+	static long toRetryAfter(final MessageHeaders response) {
+		final var header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+		return header == null ? 0 : toRetryAfter(header.getValue());
+	}
+
+	/**
+	 * Reserve the turn of a request without waiting.
+	 *
+	 * @param key The bucket key.
+	 * @return The delay in milliseconds before the request can be sent.
+	 */
+	public long reserve(final String key) {
+		if (limit <= 0) {
+			return 0;
+		}
+		final var bucket = buckets.computeIfAbsent(key, k -> {
+			final var b = new Bucket();
+			b.rate = limit;
+			b.tokens = limit;
+			b.refilled = System.currentTimeMillis();
+			return b;
+		});
+		synchronized (bucket) {
+			final var now = System.currentTimeMillis();
+			bucket.tokens = Math.min(bucket.rate, bucket.tokens + (now - bucket.refilled) * bucket.rate / 1000);
+			bucket.refilled = now;
+			bucket.tokens--;
+			final var wait = Math.max(bucket.blocked - now,
+					bucket.tokens >= 0 ? 0 : (long) Math.ceil(-bucket.tokens * 1000 / bucket.rate));
+			if (wait > maxWait) {
+				// Give back the token, the caller gives up
+				bucket.tokens++;
+				throw new ValidationJsonException(VCloudPluginResource.PARAMETER_API, "vcloud-throttled", key);
+			}
+			return wait;
+		}
+	}
+
+	/**
+	 * Wait for the turn of a request.
+	 *
+	 * @param key The bucket key.
+	 */
+	public void acquire(final String key) {
+		final var wait = reserve(key);
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ValidationJsonException(VCloudPluginResource.PARAMETER_API, "vcloud-throttled", key);
+			}
+		}
+	}
+
+	/**
+	 * Record the response of a request, and adapt the rate of its bucket.
+	 *
+	 * @param key        The bucket key.
+	 * @param status     The HTTP status. <code>0</code> when there is no response.
+	 * @param retryAfter The "Retry-After" delay in milliseconds. <code>0</code> when not defined.
+	 */
+	public void record(final String key, final int status, final long retryAfter) {
+		final var bucket = buckets.get(key);
+		if (bucket == null || status == 0) {
+			return;
+		}
+		synchronized (bucket) {
+			if (isThrottled(status)) {
+				// Multiplicative decrease
+				bucket.rate = Math.max(min, bucket.rate / 2);
+				bucket.tokens = Math.min(bucket.tokens, 0);
+				bucket.blocked = Math.max(bucket.blocked,
+						System.currentTimeMillis() + (retryAfter > 0 ? retryAfter : (long) (1000 / bucket.rate)));
+				log.info("vCloud throttled the requests of {}, rate decreased to {}/s", key, bucket.rate);
+				metrics.recordThrottle(key.substring(0, key.indexOf("##")));
+			} else if (bucket.rate < limit) {
+				// Additive increase, about one request per second every second
+				bucket.rate = Math.min(limit, bucket.rate + 1 / bucket.rate);
+			}
+		}
+	}
+
+	/**
+	 * Return the current rate of a bucket.
+	 *
+	 * @param key The bucket key.
+	 * @return The current rate in requests per second.
+	 */
+	public double getRate(final String key) {
+		final var bucket = buckets.get(key);
+		if (bucket == null) {
+			return limit;
+		}
+		synchronized (bucket) {
+			return bucket.rate;
+		}
+	}
+
+	/**
+	 * Reset all buckets.
+	 */
+	public void clear() {
+		buckets.clear();
+	}
+}
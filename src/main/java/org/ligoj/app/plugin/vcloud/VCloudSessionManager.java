@@ -0,0 +1,304 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.HttpMethod;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.ligoj.bootstrap.core.curl.CurlRequest;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * vCloud session tokens lifecycle. The "x-vcloud-authorization" tokens are cached by session URL and credentials,
+ * with their age and last usage. The sessions still in use are refreshed in background before their expiration, so
+ * the login is kept off the request path. The replaced sessions are closed, so they do not count against the session
+ * limits of vCloud until their expiration.
+ */
+@Component
+@Slf4j
+public class VCloudSessionManager implements InitializingBean, DisposableBean {
+
+	@Value("${saas.service-vm-vcloud-auth-retries:2}")
+	private int retries;
+
+	@Value("${saas.service-vm-vcloud-auth-timeout:5000}")
+	private int timeout;
+
+	/**
+	 * Idle timeout in milliseconds of a vCloud session. vCloud default is 30 minutes.
+	 */
+	@Value("${saas.service-vm-vcloud-session-idle:1800000}")
+	private long idle;
+
+	/**
+	 * Maximal age in milliseconds of a vCloud session, whatever the activity. vCloud default is 24 hours.
+	 */
+	@Value("${saas.service-vm-vcloud-session-max-age:86400000}")
+	private long maxAge;
+
+	/**
+	 * Delay in milliseconds before the expiration from which a session is refreshed.
+	 */
+	@Value("${saas.service-vm-vcloud-session-margin:120000}")
+	private long margin;
+
+	/**
+	 * Period in milliseconds of the background refresh.
+	 */
+	@Value("${saas.service-vm-vcloud-session-refresh:60000}")
+	private long refresh;
+
+	@Autowired
+	private VCloudConnectionManager connectionManager;
+
+	@Autowired
+	private VCloudSingleFlight singleFlight;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	@Autowired
+	private VCloudCircuitBreaker breaker;
+
+	@Autowired
+	private VCloudRateLimiter rateLimiter;
+
+	/**
+	 * Sessions by session URL and credentials.
+	 */
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * An authenticated vCloud session.
+	 */
+	@Getter
+	@AllArgsConstructor
+	private static class Session {
+
+		/**
+		 * The "x-vcloud-authorization" token.
+		 */
+		private final String token;
+
+		/**
+		 * Session URL.
+		 */
+		private final String url;
+
+		/**
+		 * Encoded credentials.
+		 */
+		private final String authentication;
+
+		/**
+		 * Login timestamp.
+		 */
+		private final long created;
+
+		/**
+		 * Last usage timestamp.
+		 */
+		private volatile long used;
+	}
+
+	private String toKey(final String url, final String authentication) {
+		return url + "##" + authentication;
+	}
+
+	/**
+	 * Return the expiration timestamp of the given session.
+	 */
+	private long getExpiration(final Session session) {
+		return Math.min(session.getUsed() + idle, session.getCreated() + maxAge);
+	}
+
+	/**
+	 * Return a valid token for the given credentials. A new session is opened when there is no cached one, or when it is
+	 * about to expire.
+	 *
+	 * @param url            The session URL.
+	 * @param authentication The encoded credentials.
+	 * @return The "x-vcloud-authorization" token.
+	 */
+	public String getToken(final String url, final String authentication) {
+		final var key = toKey(url, authentication);
+		var session = sessions.get(key);
+		final var now = System.currentTimeMillis();
+		final var hit = session != null && getExpiration(session) - margin >= now;
+		metrics.recordSession(url, hit);
+		if (!hit) {
+			// Concurrent logins with the same credentials share the same request
+			session = singleFlight.execute("login##" + key, () -> login(url, authentication));
+		}
+		session.used = now;
+		return session.getToken();
+	}
+
+	/**
+	 * Return a valid token for the given credentials without blocking the caller. A cached token is returned
+	 * immediately, otherwise the login is executed on a virtual thread.
+	 *
+	 * @param url            The session URL.
+	 * @param authentication The encoded credentials.
+	 * @return The future "x-vcloud-authorization" token.
+	 */
+	public CompletableFuture<String> getTokenAsync(final String url, final String authentication) {
+		final var session = sessions.get(toKey(url, authentication));
+		if (session != null && getExpiration(session) - margin >= System.currentTimeMillis()) {
+			return CompletableFuture.completedFuture(getToken(url, authentication));
+		}
+		return CompletableFuture.supplyAsync(() -> getToken(url, authentication), Thread::startVirtualThread);
+	}
+
+	/**
+	 * Invalidate the session of the given credentials, such as after a 401 response.
+	 *
+	 * @param url            The session URL.
+	 * @param authentication The encoded credentials.
+	 */
+	public void invalidate(final String url, final String authentication) {
+		log.info("Invalidate vCloud session {}", url);
+		sessions.remove(toKey(url, authentication));
+	}
+
+	/**
+	 * Invalidate all sessions.
+	 */
+	public void clear() {
+		sessions.clear();
+	}
+
+	/**
+	 * Open a new session and cache it.
+	 */
+	private Session login(final String url, final String authentication) {
+		for (var i = 0; i < retries; i++) {
+			final var token = newToken(url, authentication);
+			if (StringUtils.isNotEmpty(token)) {
+				final var now = System.currentTimeMillis();
+				final var session = new Session(token, url, authentication, now, now);
+				sessions.put(toKey(url, authentication), session);
+				return session;
+			}
+		}
+		throw new ValidationJsonException(VCloudPluginResource.PARAMETER_API, "vcloud-login");
+	}
+
+	/**
+	 * Return the organization of the encoded credentials "user@organization:password".
+	 */
+	static String toOrganization(final String authentication) {
+		final var credentials = StringUtils.substringBefore(
+				new String(Base64.decodeBase64(authentication), StandardCharsets.UTF_8), ":");
+		return StringUtils.substringAfterLast(credentials, "@");
+	}
+
+	/**
+	 * Execute the authentication request.
+	 *
+	 * @return The new token or <code>null</code>.
+	 */
+	private String newToken(final String url, final String authentication) {
+		try (var processor = new VCloudCurlProcessor(connectionManager.getClient(url), metrics, breaker)) {
+			// The logins share the rate of the organization
+			processor.limit(rateLimiter, VCloudRateLimiter.toKey(url, toOrganization(authentication)));
+
+			// Authentication request
+			final var request = new CurlRequest(HttpMethod.POST, url, null, VCloudCurlProcessor.LOGIN_CALLBACK,
+					"Authorization:Basic " + authentication);
+
+			// Execute with a timeout
+			request.setTimeout(timeout);
+			processor.process(Collections.singletonList(request));
+			return processor.token;
+		}
+	}
+
+	/**
+	 * Close a replaced session without blocking the caller. A failure is only logged, the session expires anyway.
+	 */
+	private void logout(final Session session) {
+		Thread.startVirtualThread(() -> {
+			try (var processor = new VCloudCurlProcessor(connectionManager.getClient(session.getUrl()), metrics,
+					breaker)) {
+				processor.limit(rateLimiter,
+						VCloudRateLimiter.toKey(session.getUrl(), toOrganization(session.getAuthentication())));
+				processor.setToken(session.getToken());
+
+				// The session of the token, "/api/sessions" being the login URL
+				final var request = new CurlRequest(HttpMethod.DELETE, Strings.CS.removeEnd(session.getUrl(), "s"),
+						null, (r, response) -> response.getCode() == HttpServletResponse.SC_NO_CONTENT);
+				request.setTimeout(timeout);
+				if (!processor.process(Collections.singletonList(request))) {
+					log.info("Unable to close the replaced vCloud session {}", session.getUrl());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Refresh the sessions used since their last login and about to expire, and drop the expired ones. The replaced
+	 * sessions are closed.
+	 */
+	void refresh() {
+		final var now = System.currentTimeMillis();
+		sessions.forEach((key, session) -> {
+			if (getExpiration(session) < now) {
+				// Expired session, no more used
+				sessions.remove(key, session);
+			} else if (getExpiration(session) - 2 * margin < now && session.getUsed() > session.getCreated()) {
+				// Session in use and about to expire
+				try {
+					login(session.getUrl(), session.getAuthentication()).used = session.getUsed();
+					log.info("vCloud session {} refreshed", session.getUrl());
+					logout(session);
+				} catch (final RuntimeException e) {
+					log.info("Unable to refresh vCloud session {}: {}", session.getUrl(), e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Return the amount of cached sessions.
+	 *
+	 * @return The amount of cached sessions.
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("vcloud-session").daemon()
+				.factory());
+		scheduler.scheduleWithFixedDelay(this::refresh, refresh, refresh, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() {
+		scheduler.shutdownNow();
+	}
+}
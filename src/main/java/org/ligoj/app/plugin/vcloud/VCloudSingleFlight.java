@@ -0,0 +1,77 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce the concurrent identical reads: while a read is in flight, the other callers with the same key wait for
+ * its result instead of executing their own request.
+ */
+@Component
+public class VCloudSingleFlight {
+
+	/**
+	 * In flight reads by key.
+	 */
+	private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Amount of callers served by the read of another caller.
+	 */
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Execute the given read, or wait for the identical one in flight.
+	 *
+	 * @param key    The read key, usually the API URL, the credentials and the resource path.
+	 * @param loader The read to execute when there is no identical read in flight.
+	 * @param <T>    The result type.
+	 * @return The result of the read, shared by all the concurrent callers.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(final String key, final Supplier<T> loader) {
+		final var future = new CompletableFuture<Object>();
+		final var existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			// Wait for the identical read in flight
+			coalesced.increment();
+			try {
+				return (T) existing.join();
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof RuntimeException re) {
+					throw re;
+				}
+				throw e;
+			}
+		}
+
+		try {
+			final var result = loader.get();
+			future.complete(result);
+			return result;
+		} catch (final RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	/**
+	 * Return the amount of callers served by the read of another caller.
+	 *
+	 * @return The amount of callers served by the read of another caller.
+	 */
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Set;
+
+/**
+ * A vCloud asynchronous task, returned by the power and undeploy actions.
+ */
+@Getter
+@Setter
+public class VCloudTask {
+
+	/**
+	 * Status of a task still in progress.
+	 */
+	private static final Set<String> RUNNING = Set.of("queued", "preRunning", "running");
+
+	/**
+	 * Task URL.
+	 */
+	private String href;
+
+	/**
+	 * vCloud operation name, such as <code>vappUndeployPowerOff</code>.
+	 */
+	private String operation;
+
+	/**
+	 * vCloud task status: <code>queued</code>, <code>preRunning</code>, <code>running</code>, <code>success</code>,
+	 * <code>error</code>, <code>canceled</code> or <code>aborted</code>.
+	 */
+	private String status;
+
+	/**
+	 * Error message when the task failed.
+	 */
+	private String error;
+
+	/**
+	 * Local tracking start timestamp.
+	 */
+	private long start;
+
+	/**
+	 * Local tracking end timestamp. <code>0</code> while the task is running.
+	 */
+	private long end;
+
+	/**
+	 * Indicates the task is still in progress.
+	 *
+	 * @return <code>true</code> when the task is still in progress.
+	 */
+	public boolean isRunning() {
+		return RUNNING.contains(status);
+	}
+
+	/**
+	 * Indicates the task is completed with success.
+	 *
+	 * @return <code>true</code> when the task is completed with success.
+	 */
+	public boolean isSucceed() {
+		return "success".equals(status);
+	}
+
+	/**
+	 * Return the tracking duration in milliseconds.
+	 *
+	 * @return The tracking duration in milliseconds.
+	 */
+	public long getDuration() {
+		return (end == 0 ? System.currentTimeMillis() : end) - start;
+	}
+}
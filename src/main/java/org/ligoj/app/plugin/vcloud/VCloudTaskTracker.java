@@ -0,0 +1,259 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ligoj.app.plugin.vm.dao.VmExecutionRepository;
+import org.ligoj.app.plugin.vm.model.VmExecution;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Track the vCloud tasks returned by the power operations. The tasks are polled in background with an exponential
+ * backoff: a small shared scheduler only times the polls, and each poll runs on its own virtual thread, so the slow
+ * directors do not hold the scheduler. The outcome is reported to the {@link VmExecution}.
+ */
+@Component
+@Slf4j
+public class VCloudTaskTracker implements InitializingBean, DisposableBean {
+
+	/**
+	 * Amount of threads shared by all the task polls for their timing.
+	 */
+	@Value("${saas.service-vm-vcloud-task-threads:2}")
+	private int threads;
+
+	/**
+	 * Delay in milliseconds before the first poll.
+	 */
+	@Value("${saas.service-vm-vcloud-task-delay:1000}")
+	private long delay;
+
+	/**
+	 * Maximal delay in milliseconds between two polls.
+	 */
+	@Value("${saas.service-vm-vcloud-task-max-delay:30000}")
+	private long maxDelay;
+
+	/**
+	 * Duration in milliseconds after which a running task is no more tracked.
+	 */
+	@Value("${saas.service-vm-vcloud-task-timeout:1800000}")
+	private long timeout;
+
+	@Autowired
+	private VmExecutionRepository executionRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * The executor running the blocking polls, one virtual thread per poll.
+	 */
+	private ExecutorService pollers;
+
+	/**
+	 * Amount of tasks being tracked.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * Parse a vCloud Task document.
+	 *
+	 * @param xml The task XML. May be <code>null</code>.
+	 * @return The parsed task or <code>null</code> when the document is not a task with a reference.
+	 */
+	static VCloudTask toTask(final String xml) {
+		if (xml == null) {
+			return null;
+		}
+		try {
+			final var reader = VCloudVmParser.newReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+			try {
+				VCloudTask task = null;
+				while (reader.hasNext()) {
+					if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+						continue;
+					}
+					if (task == null && "Task".equals(reader.getLocalName())) {
+						task = new VCloudTask();
+						task.setHref(StringUtils.trimToNull(VCloudVmParser.get(reader, "href")));
+						task.setStatus(VCloudVmParser.get(reader, "status"));
+						task.setOperation(VCloudVmParser.get(reader, "operationName"));
+					} else if (task != null && "Error".equals(reader.getLocalName())) {
+						task.setError(VCloudVmParser.get(reader, "message"));
+					}
+				}
+				return task == null || task.getHref() == null ? null : task;
+			} finally {
+				reader.close();
+			}
+		} catch (final XMLStreamException e) {
+			log.info("Invalid vCloud task {}", xml, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Track the task returned by a vCloud action. Nothing is tracked when the response is not a task.
+	 *
+	 * @param execution The execution to update with the outcome of the task.
+	 * @param response  The response of the vCloud action, should be a Task document.
+	 * @param poller    The function returning the current Task document from its URL.
+	 * @param listener  The listener notified when the task is no more running, completed or not.
+	 * @return The tracked task or <code>null</code> when the response is not a task.
+	 */
+	public VCloudTask track(final VmExecution execution, final String response, final UnaryOperator<String> poller,
+			final Consumer<VCloudTask> listener) {
+		return track(List.of(execution), response, poller, listener);
+	}
+
+	/**
+	 * Track the task returned by a vCloud action shared by several executions, such as a vApp action. The task is
+	 * polled once for all the executions. Nothing is tracked when the response is not a task.
+	 *
+	 * @param executions The executions to update with the outcome of the task.
+	 * @param response   The response of the vCloud action, should be a Task document.
+	 * @param poller     The function returning the current Task document from its URL.
+	 * @param listener   The listener notified when the task is no more running, completed or not.
+	 * @return The tracked task or <code>null</code> when the response is not a task.
+	 */
+	public VCloudTask track(final List<VmExecution> executions, final String response,
+			final UnaryOperator<String> poller, final Consumer<VCloudTask> listener) {
+		final var task = toTask(response);
+		if (task == null) {
+			executions.forEach(e -> log.info("No task to track for the execution of {} on vm {}", e.getOperation(),
+					e.getVm()));
+			return null;
+		}
+		task.setStart(System.currentTimeMillis());
+		active.incrementAndGet();
+		schedule(executions, task, poller, listener, delay);
+		return task;
+	}
+
+	/**
+	 * Schedule the next poll of the given task.
+	 */
+	private void schedule(final List<VmExecution> executions, final VCloudTask task,
+			final UnaryOperator<String> poller, final Consumer<VCloudTask> listener, final long nextDelay) {
+		scheduler.schedule(() -> pollers.execute(() -> poll(executions, task, poller, listener, nextDelay)),
+				nextDelay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Poll the task and schedule the next poll with a doubled delay while the task is running.
+	 */
+	private void poll(final List<VmExecution> executions, final VCloudTask task, final UnaryOperator<String> poller,
+			final Consumer<VCloudTask> listener, final long currentDelay) {
+		try {
+			final var current = toTask(poller.apply(task.getHref()));
+			if (current != null) {
+				task.setStatus(current.getStatus());
+				task.setError(current.getError());
+			}
+		} catch (final RuntimeException e) {
+			// Keep the previous status, and retry later
+			log.info("Unable to poll vCloud task {}: {}", task.getHref(), e.getMessage());
+		}
+
+		if (task.isRunning() && System.currentTimeMillis() - task.getStart() < timeout) {
+			schedule(executions, task, poller, listener, Math.min(currentDelay * 2, maxDelay));
+			return;
+		}
+
+		// The task is completed, or no more tracked
+		task.setEnd(System.currentTimeMillis());
+		active.decrementAndGet();
+		listener.accept(task);
+		executions.forEach(e -> report(e, task));
+	}
+
+	/**
+	 * Report the outcome of the task to the execution.
+	 */
+	private void report(final VmExecution execution, final VCloudTask task) {
+		final var seconds = TimeUnit.MILLISECONDS.toSeconds(task.getDuration());
+		final String statusText;
+		if (task.isSucceed()) {
+			statusText = "Task " + task.getOperation() + " succeed in " + seconds + "s";
+		} else if (task.isRunning()) {
+			statusText = "Task " + task.getOperation() + " still running after " + seconds + "s";
+		} else {
+			statusText = StringUtils.abbreviate("Task " + task.getOperation() + " " + task.getStatus() + " after "
+					+ seconds + "s: " + StringUtils.defaultString(task.getError()), 250);
+		}
+		log.info("vCloud task {} for the execution of {} on vm {}: {}", task.getHref(), execution.getOperation(),
+				execution.getVm(), statusText);
+		final Consumer<VmExecution> update = e -> {
+			e.setStatusText(statusText);
+			if (!task.isRunning()) {
+				e.setSucceed(task.isSucceed());
+			}
+		};
+		update.accept(execution);
+		new TransactionTemplate(transactionManager).executeWithoutResult(s -> Optional.ofNullable(execution.getId())
+				.flatMap(executionRepository::findById).ifPresent(update));
+	}
+
+	/**
+	 * Report the outcome of an execution completed after its caller has returned, such as a dispatched one.
+	 *
+	 * @param execution The completed execution.
+	 */
+	public void report(final VmExecution execution) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(s -> Optional.ofNullable(execution.getId())
+				.flatMap(executionRepository::findById).ifPresent(e -> {
+					e.setVm(execution.getVm());
+					e.setPreviousState(execution.getPreviousState());
+					e.setOperation(execution.getOperation());
+					e.setStatusText(execution.getStatusText());
+					e.setSucceed(execution.isSucceed());
+				}));
+	}
+
+	/**
+	 * Return the amount of tasks being tracked.
+	 *
+	 * @return The amount of tasks being tracked.
+	 */
+	public int getActive() {
+		return active.get();
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		scheduler = Executors.newScheduledThreadPool(threads, Thread.ofPlatform().name("vcloud-task-", 0)
+				.daemon().factory());
+		pollers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("vcloud-task-poll-", 0).factory());
+	}
+
+	@Override
+	public void destroy() {
+		scheduler.shutdownNow();
+		pollers.shutdownNow();
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded short-TTL cache of {@link VCloudVm} states, by scope and VM identifier. The scope is the API URL and the
+ * credentials: a state is only served to the credentials having read it, since other ones may not see this VM. A busy
+ * VM is never cached since its state is about to change. A state read before the last invalidation of its VM, such as
+ * a power operation, is not cached.
+ */
+@Component
+public class VCloudVmCache {
+
+	/**
+	 * Time to live in milliseconds of a cached VM state. <code>0</code> disables the cache.
+	 */
+	@Value("${saas.service-vm-vcloud-vm-cache-ttl:5000}")
+	private long ttl;
+
+	/**
+	 * Maximal amount of cached VM states. The least recently used entries are evicted first.
+	 */
+	@Value("${saas.service-vm-vcloud-vm-cache-size:10000}")
+	private int maxSize;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Invalidation generation, incremented by each invalidation.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * Generation of the last invalidation by VM identifier, in access order. Bounded as the entries, guarded by
+	 * {@link #entries}.
+	 */
+	private final Map<String, Long> invalidations = new LinkedHashMap<>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+			return size() > maxSize;
+		}
+	};
+
+	/**
+	 * Cached entries in access order.
+	 */
+	private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+			if (size() > maxSize) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Cached VM state with its loading time.
+	 */
+	private record Entry(VCloudVm vm, long loaded) {
+	}
+
+	private String toKey(final String scope, final String id) {
+		return scope + "##" + id;
+	}
+
+	/**
+	 * Return the cached VM state.
+	 *
+	 * @param scope The vCloud API URL, followed by <code>##</code> and the credentials hash.
+	 * @param id    The VM identifier.
+	 * @return The cached VM state or <code>null</code> when absent or expired.
+	 */
+	public VCloudVm get(final String scope, final String id) {
+		final Entry entry;
+		synchronized (entries) {
+			entry = entries.get(toKey(scope, id));
+		}
+		if (entry == null || System.currentTimeMillis() - entry.loaded() > ttl) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.vm();
+	}
+
+	/**
+	 * Return the cached VM state, or load and cache it.
+	 *
+	 * @param scope  The vCloud API URL, followed by <code>##</code> and the credentials hash.
+	 * @param id     The VM identifier.
+	 * @param loader The VM state loader used when the entry is absent or expired.
+	 * @return The cached or loaded VM state.
+	 */
+	public VCloudVm get(final String scope, final String id, final Supplier<VCloudVm> loader) {
+		final var cached = get(scope, id);
+		if (cached != null) {
+			return cached;
+		}
+		final var since = begin();
+		final var vm = loader.get();
+		put(scope, vm, since);
+		return vm;
+	}
+
+	/**
+	 * Return the current invalidation generation, to be taken before reading the VM states to cache.
+	 *
+	 * @return The current invalidation generation.
+	 */
+	public long begin() {
+		return generation.get();
+	}
+
+	/**
+	 * Cache the given VM state. Busy VM are not cached and their previous state is invalidated. A state read before
+	 * the last invalidation of this VM is ignored.
+	 *
+	 * @param scope The vCloud API URL, followed by <code>##</code> and the credentials hash.
+	 * @param vm    The VM state to cache.
+	 * @param since The invalidation generation taken before reading this state, see {@link #begin()}.
+	 */
+	public void put(final String scope, final VCloudVm vm, final long since) {
+		final var key = toKey(scope, vm.getId());
+		synchronized (entries) {
+			final var invalidated = invalidations.get(vm.getId());
+			if (invalidated != null && invalidated > since) {
+				// Stale state, read before the last invalidation
+				return;
+			}
+			if (vm.isBusy() || ttl <= 0) {
+				entries.remove(key);
+			} else {
+				entries.put(key, new Entry(vm, System.currentTimeMillis()));
+			}
+		}
+	}
+
+	/**
+	 * Invalidate the cached states of a VM, whatever the credentials.
+	 *
+	 * @param api The vCloud API URL.
+	 * @param id  The VM identifier.
+	 */
+	public void invalidate(final String api, final String id) {
+		invalidateScopes(api + "##", id);
+	}
+
+	/**
+	 * Invalidate the cached states of a VM, whatever the vCloud API URL and the credentials.
+	 *
+	 * @param id The VM identifier.
+	 */
+	public void invalidate(final String id) {
+		invalidateScopes("", id);
+	}
+
+	/**
+	 * Invalidate the cached states of a VM whose scope starts with the given prefix, and the states being read.
+	 */
+	private void invalidateScopes(final String prefix, final String id) {
+		final var suffix = toKey("", id);
+		synchronized (entries) {
+			invalidations.put(id, generation.incrementAndGet());
+			entries.keySet().removeIf(k -> k.startsWith(prefix) && k.endsWith(suffix));
+		}
+	}
+
+	/**
+	 * Invalidate all cached states and reset the statistics.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			invalidations.clear();
+		}
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	/**
+	 * Return the statistics of this cache.
+	 *
+	 * @return The statistics of this cache.
+	 */
+	public VCloudCacheStatistics getStatistics() {
+		synchronized (entries) {
+			return new VCloudCacheStatistics(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser of vCloud JSON query records, returned by the directors supporting the
+ * <code>application/*+json</code> media type. Each record of the <code>record</code> array is read from the stream
+ * and converted to a {@link VCloudVm} without building the whole document.
+ */
+public final class VCloudVmJsonParser {
+
+	/**
+	 * Shared factory, thread safe.
+	 */
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private VCloudVmJsonParser() {
+		// Utility class
+	}
+
+	/**
+	 * Indicate the given content type is a JSON one.
+	 *
+	 * @param contentType The response content type. May be <code>null</code>.
+	 * @return <code>true</code> when the content type is a JSON one, such as
+	 *         <code>application/vnd.vmware.vcloud.query.records+json</code>.
+	 */
+	public static boolean isJson(final String contentType) {
+		return Strings.CI.contains(contentType, "json");
+	}
+
+	/**
+	 * Read all records from the given JSON stream.
+	 *
+	 * @param input The JSON stream. Not closed by this method.
+	 * @return The parsed VMs.
+	 * @throws IOException When the stream cannot be read or is not a valid JSON document.
+	 */
+	public static List<VCloudVm> toVms(final InputStream input) throws IOException {
+		final var result = new ArrayList<VCloudVm>();
+		parse(input, result::add);
+		return result;
+	}
+
+	/**
+	 * Read the records from the given JSON stream and forward them to the given consumer as soon as they are read.
+	 *
+	 * @param input    The JSON stream. Not closed by this method.
+	 * @param consumer The VM consumer.
+	 * @return The paging attributes of the query result. Zero values when not defined.
+	 * @throws IOException When the stream cannot be read or is not a valid JSON document.
+	 */
+	public static VCloudQueryPage parse(final InputStream input, final Consumer<VCloudVm> consumer)
+			throws IOException {
+		final var page = new VCloudQueryPage();
+		try (var parser = FACTORY.createParser(input)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Invalid vCloud query result");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				final var field = parser.currentName();
+				final var token = parser.nextToken();
+				switch (field) {
+				case "total" -> page.setTotal(parser.getValueAsInt());
+				case "page" -> page.setPage(parser.getValueAsInt());
+				case "pageSize" -> page.setPageSize(parser.getValueAsInt());
+				case "record" -> {
+					if (token == JsonToken.START_ARRAY) {
+						while (parser.nextToken() == JsonToken.START_OBJECT) {
+							consumer.accept(toVm(parser));
+						}
+					}
+				}
+				default -> parser.skipChildren();
+				}
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Build a described {@link VCloudVm} bean from the current record object. The nested objects and arrays, such as
+	 * the links, are skipped.
+	 */
+	private static VCloudVm toVm(final JsonParser parser) throws IOException {
+		final var result = new VCloudVm();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final var field = parser.currentName();
+			parser.nextToken();
+			switch (field) {
+			case "id" -> result.setId(Strings.CS.removeStart(parser.getValueAsString(), "urn:vcloud:vm:"));
+			case "name" -> result.setName(StringUtils.defaultString(parser.getValueAsString()));
+			case "guestOs" -> result.setOs(StringUtils.defaultString(parser.getValueAsString()));
+			case "storageProfileName" ->
+				result.setStorageProfileName(StringUtils.defaultString(parser.getValueAsString()));
+			case "status" -> result.setStatus(EnumUtils.getEnum(VmStatus.class, parser.getValueAsString()));
+			case "numberOfCpus" -> result.setCpu(parser.getValueAsInt());
+			case "isBusy" -> result.setBusy(parser.getValueAsBoolean());
+			case "containerName" -> result.setVApp(StringUtils.trimToNull(parser.getValueAsString()));
+			case "container" -> result.setVAppId(StringUtils
+					.trimToNull(Strings.CS.removeStart(parser.getValueAsString(), "urn:vcloud:vapp:")));
+			case "memoryMB" -> result.setRam(parser.getValueAsInt());
+			case "isDeployed" -> result.setDeployed(parser.getValueAsBoolean());
+			default -> parser.skipChildren();
+			}
+		}
+		return result;
+	}
+}
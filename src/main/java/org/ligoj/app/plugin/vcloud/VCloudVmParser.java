@@ -0,0 +1,142 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser of vCloud <code>QueryResultRecords</code> documents. Each <code>VMRecord</code> element is read
+ * from the stream and converted to a {@link VCloudVm} without building the whole document.
+ */
+public final class VCloudVmParser {
+
+	/**
+	 * Shared factory, thread safe once configured. DTD and external entities are disabled.
+	 */
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newFactory();
+
+	static {
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+	}
+
+	private VCloudVmParser() {
+		// Utility class
+	}
+
+	/**
+	 * Read all <code>VMRecord</code> elements from the given XML stream.
+	 *
+	 * @param input The XML stream. Not closed by this method.
+	 * @return The parsed VMs.
+	 * @throws IOException When the stream cannot be read or is not a valid XML document.
+	 */
+	public static List<VCloudVm> toVms(final InputStream input) throws IOException {
+		final var result = new ArrayList<VCloudVm>();
+		parse(input, result::add);
+		return result;
+	}
+
+	/**
+	 * Read the <code>VMRecord</code> elements from the given XML stream and forward them to the given consumer as soon
+	 * as they are read.
+	 *
+	 * @param input    The XML stream. Not closed by this method.
+	 * @param consumer The VM consumer.
+	 * @return The paging attributes of the <code>QueryResultRecords</code> root element. Zero values when the root
+	 *         element is not a query result.
+	 * @throws IOException When the stream cannot be read or is not a valid XML document.
+	 */
+	public static VCloudQueryPage parse(final InputStream input, final Consumer<VCloudVm> consumer)
+			throws IOException {
+		final var page = new VCloudQueryPage();
+		try {
+			final var reader = newReader(input);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+						if ("VMRecord".equals(reader.getLocalName())) {
+							consumer.accept(toVm(reader));
+						} else if ("QueryResultRecords".equals(reader.getLocalName())) {
+							page.setTotal(NumberUtils.toInt(get(reader, "total")));
+							page.setPage(NumberUtils.toInt(get(reader, "page")));
+							page.setPageSize(NumberUtils.toInt(get(reader, "pageSize")));
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (final XMLStreamException e) {
+			throw new IOException("Invalid vCloud query result", e);
+		}
+		return page;
+	}
+
+	/**
+	 * Return a new secured streaming reader of the given XML stream.
+	 *
+	 * @param input The XML stream. Not closed by the reader.
+	 * @return A new streaming reader.
+	 * @throws XMLStreamException When the reader cannot be created.
+	 */
+	static XMLStreamReader newReader(final InputStream input) throws XMLStreamException {
+		return FACTORY.createXMLStreamReader(input);
+	}
+
+	/**
+	 * Return the attribute value or an empty string when not defined.
+	 *
+	 * @param reader    The reader positioned on an element.
+	 * @param attribute The attribute name, without namespace.
+	 * @return The attribute value or an empty string when not defined.
+	 */
+	static String get(final XMLStreamReader reader, final String attribute) {
+		return StringUtils.defaultString(reader.getAttributeValue(XMLConstants.NULL_NS_URI, attribute));
+	}
+
+	/**
+	 * Return the attribute boolean value, <code>false</code> when not defined.
+	 */
+	private static boolean getBoolean(final XMLStreamReader reader, final String attribute) {
+		return Boolean.parseBoolean(StringUtils.trimToNull(get(reader, attribute)));
+	}
+
+	/**
+	 * Build a described {@link VCloudVm} bean from the current VMRecord element.
+	 */
+	private static VCloudVm toVm(final XMLStreamReader reader) {
+		final var result = new VCloudVm();
+		result.setId(Strings.CS.removeStart(get(reader, "id"), "urn:vcloud:vm:"));
+		result.setName(get(reader, "name"));
+		result.setOs(get(reader, "guestOs"));
+
+		// Optional attributes
+		result.setStorageProfileName(get(reader, "storageProfileName"));
+		result.setStatus(EnumUtils.getEnum(VmStatus.class, get(reader, "status")));
+		result.setCpu(NumberUtils.toInt(StringUtils.trimToNull(get(reader, "numberOfCpus"))));
+		result.setBusy(getBoolean(reader, "isBusy"));
+		result.setVApp(StringUtils.trimToNull(get(reader, "containerName")));
+		result.setVAppId(StringUtils.trimToNull(Strings.CS.removeStart(get(reader, "container"), "urn:vcloud:vapp:")));
+		result.setRam(NumberUtils.toInt(StringUtils.trimToNull(get(reader, "memoryMB"))));
+		result.setDeployed(getBoolean(reader, "isDeployed"));
+		return result;
+	}
+}
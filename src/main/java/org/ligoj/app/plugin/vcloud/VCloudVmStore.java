@@ -0,0 +1,301 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.ligoj.app.plugin.vm.model.VmStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compact columnar store of VMs, for the very large inventories. Each attribute of the vCloud query records is held in
+ * its own column: the UUID identifiers as two <code>long</code>, the repeated values such as the guest OS, the storage
+ * profile and the vApp are dictionary encoded, and the numbers and flags are primitive arrays. The {@link VCloudVm}
+ * beans are built on demand, and are not shared. The lookups by identifier use a binary search over the identifiers
+ * sorted once at build time. Only the power state of a VM can be updated after the build, guarded by this store.
+ */
+public final class VCloudVmStore {
+
+	private static final VmStatus[] STATUSES = VmStatus.values();
+
+	private static final byte BUSY = 1;
+
+	private static final byte DEPLOYED = 2;
+
+	/**
+	 * Code of a <code>null</code> value in a dictionary encoded column.
+	 */
+	private static final int NULL = -1;
+
+	private final int size;
+
+	/**
+	 * Most significant bits of the UUID identifiers.
+	 */
+	private final long[] idHigh;
+
+	/**
+	 * Least significant bits of the UUID identifiers.
+	 */
+	private final long[] idLow;
+
+	/**
+	 * The identifiers not being a canonical UUID, <code>null</code> included, by position.
+	 */
+	private final Map<Integer, String> idOthers = new HashMap<>();
+
+	/**
+	 * Positions of the UUID identifiers, sorted by identifier then by position.
+	 */
+	private final int[] sortedIds;
+
+	private final String[] names;
+
+	/**
+	 * Distinct values of all the dictionary encoded columns.
+	 */
+	private final String[] dictionary;
+
+	private final int[] os;
+
+	private final int[] storageProfiles;
+
+	private final int[] vApps;
+
+	private final int[] vAppIds;
+
+	/**
+	 * Status ordinal plus one. <code>0</code> for a <code>null</code> status. Guarded by this store.
+	 */
+	private final byte[] statuses;
+
+	private final short[] cpus;
+
+	private final int[] rams;
+
+	/**
+	 * Busy and deployed flags. Guarded by this store.
+	 */
+	private final byte[] flags;
+
+	/**
+	 * Build a store holding the given VMs, in the same order.
+	 *
+	 * @param vms The VMs to store. Only the attributes of the vCloud query records are kept.
+	 */
+	public VCloudVmStore(final Collection<VCloudVm> vms) {
+		size = vms.size();
+		idHigh = new long[size];
+		idLow = new long[size];
+		names = new String[size];
+		os = new int[size];
+		storageProfiles = new int[size];
+		vApps = new int[size];
+		vAppIds = new int[size];
+		statuses = new byte[size];
+		cpus = new short[size];
+		rams = new int[size];
+		flags = new byte[size];
+		final var codes = new HashMap<String, Integer>();
+		final var values = new ArrayList<String>();
+		var i = 0;
+		for (final var vm : vms) {
+			setId(i, vm.getId());
+			names[i] = vm.getName();
+			os[i] = encode(codes, values, vm.getOs());
+			storageProfiles[i] = encode(codes, values, vm.getStorageProfileName());
+			vApps[i] = encode(codes, values, vm.getVApp());
+			vAppIds[i] = encode(codes, values, vm.getVAppId());
+			statuses[i] = (byte) (vm.getStatus() == null ? 0 : vm.getStatus().ordinal() + 1);
+			cpus[i] = (short) vm.getCpu();
+			rams[i] = vm.getRam();
+			flags[i] = (byte) ((vm.isBusy() ? BUSY : 0) | (vm.isDeployed() ? DEPLOYED : 0));
+			i++;
+		}
+		dictionary = values.toArray(String[]::new);
+		sortedIds = IntStream.range(0, size).filter(j -> !idOthers.containsKey(j)).boxed()
+				.sorted(Comparator.<Integer>comparingLong(j -> idHigh[j]).thenComparingLong(j -> idLow[j])
+						.thenComparingInt(j -> j))
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Store an identifier as a UUID when it is a canonical one.
+	 */
+	private void setId(final int index, final String id) {
+		final var uuid = toUuid(id);
+		if (uuid == null) {
+			idOthers.put(index, id);
+		} else {
+			idHigh[index] = uuid.getMostSignificantBits();
+			idLow[index] = uuid.getLeastSignificantBits();
+		}
+	}
+
+	/**
+	 * Return the UUID of an identifier.
+	 *
+	 * @return The UUID. <code>null</code> when the identifier is not a canonical UUID.
+	 */
+	private static UUID toUuid(final String id) {
+		if (id == null || id.length() != 36) {
+			return null;
+		}
+		try {
+			final var uuid = UUID.fromString(id);
+			return uuid.toString().equals(id) ? uuid : null;
+		} catch (final IllegalArgumentException e) {
+			// Not a UUID
+			return null;
+		}
+	}
+
+	/**
+	 * Return the dictionary code of a value, added to the dictionary when new.
+	 */
+	private static int encode(final Map<String, Integer> codes, final List<String> values, final String value) {
+		if (value == null) {
+			return NULL;
+		}
+		return codes.computeIfAbsent(value, v -> {
+			values.add(v);
+			return values.size() - 1;
+		});
+	}
+
+	private String decode(final int code) {
+		return code == NULL ? null : dictionary[code];
+	}
+
+	/**
+	 * Return the amount of VMs.
+	 *
+	 * @return The amount of VMs.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the amount of distinct values of the dictionary encoded columns.
+	 *
+	 * @return The dictionary size.
+	 */
+	public int getDictionarySize() {
+		return dictionary.length;
+	}
+
+	/**
+	 * Return the identifier of a VM.
+	 *
+	 * @param index The VM position.
+	 * @return The VM identifier.
+	 */
+	public String getId(final int index) {
+		if (idOthers.containsKey(index)) {
+			return idOthers.get(index);
+		}
+		return new UUID(idHigh[index], idLow[index]).toString();
+	}
+
+	/**
+	 * Return the name of a VM.
+	 *
+	 * @param index The VM position.
+	 * @return The VM name.
+	 */
+	public String getName(final int index) {
+		return names[index];
+	}
+
+	/**
+	 * Return the position of a VM.
+	 *
+	 * @param id The VM identifier.
+	 * @return The VM position. <code>-1</code> when not found.
+	 */
+	public int indexOf(final String id) {
+		final var uuid = toUuid(id);
+		if (uuid == null) {
+			return idOthers.entrySet().stream().filter(e -> Objects.equals(id, e.getValue()))
+					.mapToInt(Map.Entry::getKey).min().orElse(-1);
+		}
+		final var high = uuid.getMostSignificantBits();
+		final var low = uuid.getLeastSignificantBits();
+
+		// Binary search of the first position having this identifier
+		var result = -1;
+		var from = 0;
+		var to = sortedIds.length - 1;
+		while (from <= to) {
+			final var middle = (from + to) >>> 1;
+			final var index = sortedIds[middle];
+			final var compare = idHigh[index] == high ? Long.compare(idLow[index], low)
+					: Long.compare(idHigh[index], high);
+			if (compare < 0) {
+				from = middle + 1;
+			} else {
+				if (compare == 0) {
+					result = index;
+				}
+				to = middle - 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Build a new VM bean from the stored attributes.
+	 *
+	 * @param index The VM position.
+	 * @return A new VM bean, not shared.
+	 */
+	public VCloudVm get(final int index) {
+		final var vm = new VCloudVm();
+		vm.setId(getId(index));
+		vm.setName(names[index]);
+		vm.setOs(decode(os[index]));
+		vm.setStorageProfileName(decode(storageProfiles[index]));
+		vm.setVApp(decode(vApps[index]));
+		vm.setVAppId(decode(vAppIds[index]));
+		vm.setCpu(cpus[index]);
+		vm.setRam(rams[index]);
+		synchronized (this) {
+			vm.setStatus(statuses[index] == 0 ? null : STATUSES[statuses[index] - 1]);
+			vm.setBusy((flags[index] & BUSY) != 0);
+			vm.setDeployed((flags[index] & DEPLOYED) != 0);
+		}
+		return vm;
+	}
+
+	/**
+	 * Update the power state of a VM, such as after a power event. The busy flag is cleared, the event being the end
+	 * of the operation.
+	 *
+	 * @param index    The VM position.
+	 * @param status   The new status.
+	 * @param deployed The new deployed flag.
+	 */
+	public synchronized void setStatus(final int index, final VmStatus status, final boolean deployed) {
+		statuses[index] = (byte) (status == null ? 0 : status.ordinal() + 1);
+		flags[index] = deployed ? DEPLOYED : 0;
+	}
+
+	/**
+	 * Return the VM beans, built on demand.
+	 *
+	 * @return The VM beans, in the store order.
+	 */
+	public Stream<VCloudVm> stream() {
+		return IntStream.range(0, size).mapToObj(this::get);
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.ligoj.app.model.ParameterValue;
+import org.ligoj.bootstrap.core.dao.RestRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * {@link ParameterValue} repository for the bulk operations of vCloud subscriptions.
+ */
+public interface VCloudParameterValueRepository extends RestRepository<ParameterValue, Integer> {
+
+	/**
+	 * Return the not secured parameter values of the given subscriptions of a node.
+	 *
+	 * @param node          The node identifier. Subscriptions of another node are ignored.
+	 * @param subscriptions The subscription identifiers.
+	 * @return The subscription identifier, the parameter identifier, the value and the project identifier.
+	 */
+	@Query("SELECT v.subscription.id, v.parameter.id, v.data, v.subscription.project.id FROM ParameterValue v"
+			+ " WHERE v.subscription.node.id = :node"
+			+ " AND v.subscription.id IN :subscriptions AND (v.parameter.secured IS NULL OR v.parameter.secured = false)")
+	List<Object[]> findAllBySubscriptions(@Param("node") String node,
+			@Param("subscriptions") Collection<Integer> subscriptions);
+}
@@ -0,0 +1,29 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud.dao;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.ligoj.app.plugin.vm.model.VmSchedule;
+import org.ligoj.bootstrap.core.dao.RestRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * {@link VmSchedule} repository for the bulk operations of vCloud subscriptions.
+ */
+public interface VCloudScheduleRepository extends RestRepository<VmSchedule, Integer> {
+
+	/**
+	 * Count the schedules of each given subscription.
+	 *
+	 * @param subscriptions The subscription identifiers.
+	 * @return The subscription identifier and the amount of schedules. Subscriptions without schedule are not
+	 *         returned.
+	 */
+	@Query("SELECT s.subscription.id, COUNT(s.id) FROM VmSchedule s WHERE s.subscription.id IN :subscriptions"
+			+ " GROUP BY s.subscription.id")
+	List<Object[]> countBySubscriptions(@Param("subscriptions") Collection<Integer> subscriptions);
+}
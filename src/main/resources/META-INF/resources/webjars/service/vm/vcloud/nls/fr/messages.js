@@ -3,10 +3,13 @@ define({
 	"service:vm:vcloud:password" : "Mot de passe",
 	"service:vm:vcloud:organization" : "Organisation",
 	"service:vm:vcloud:id" : "Identifiant VM",
+	"service:vm:vcloud:json" : "API JSON",
 	"error" : {
 		"vcloud-vm" : "VM invalide",
 		"vcloud-login" : "Authentication échouée",
-		"vcloud-admin" : "Accès administration échoué"
+		"vcloud-admin" : "Accès administration échoué",
+		"vcloud-unavailable" : "vCloud n'est pas disponible, réessayer plus tard",
+		"vcloud-throttled" : "Trop de requêtes vCloud, réessayer plus tard"
 	}
 
 });
@@ -8,10 +8,13 @@ define({
 		"service:vm:vcloud:api" : "API URL",
 		"service:vm:vcloud:vapp" : "vAPP",
 		"service:vm:vcloud:url" : "vDirector URL",
+		"service:vm:vcloud:json" : "JSON API",
 		"error" : {
 			"vcloud-vm" : "Invalid VM",
 			"vcloud-login" : "Authentication failed",
-			"vcloud-admin" : "Administrator access failed"
+			"vcloud-admin" : "Administrator access failed",
+			"vcloud-unavailable" : "vCloud is not available, retry later",
+			"vcloud-throttled" : "Too many vCloud requests, retry later"
 		}
 	},
 	"fr" : true
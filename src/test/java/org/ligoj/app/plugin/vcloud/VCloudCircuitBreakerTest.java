@@ -0,0 +1,132 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.bootstrap.MatcherUtil;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Test class of {@link VCloudCircuitBreaker}
+ */
+class VCloudCircuitBreakerTest {
+
+	private static final String URL = "https://vcloud.sample.com/api/query";
+
+	private VCloudCircuitBreaker breaker;
+
+	private VCloudMetrics metrics;
+
+	@BeforeEach
+	void prepare() {
+		metrics = new VCloudMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		breaker = new VCloudCircuitBreaker();
+		ReflectionTestUtils.setField(breaker, "threshold", 2);
+		ReflectionTestUtils.setField(breaker, "openDelay", 60000L);
+		ReflectionTestUtils.setField(breaker, "metrics", metrics);
+	}
+
+	private void fail() {
+		breaker.acquire(URL);
+		breaker.record(URL, 0);
+	}
+
+	private void assertRejected() {
+		MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class, () -> breaker.acquire(URL)),
+				VCloudPluginResource.PARAMETER_API, "vcloud-unavailable");
+	}
+
+	private double count(final VCloudCircuitBreaker.State state) {
+		final var counter = metrics.getRegistry().find(VCloudMetrics.CIRCUIT).tag("state", state.name()).counter();
+		return counter == null ? 0 : counter.count();
+	}
+
+	@Test
+	void isFailure() {
+		Assertions.assertTrue(VCloudCircuitBreaker.isFailure(0));
+		Assertions.assertTrue(VCloudCircuitBreaker.isFailure(HttpStatus.SC_BAD_GATEWAY));
+		Assertions.assertTrue(VCloudCircuitBreaker.isFailure(HttpStatus.SC_GATEWAY_TIMEOUT));
+		Assertions.assertFalse(VCloudCircuitBreaker.isFailure(HttpStatus.SC_OK));
+		Assertions.assertFalse(VCloudCircuitBreaker.isFailure(HttpStatus.SC_UNAUTHORIZED));
+		Assertions.assertFalse(VCloudCircuitBreaker.isFailure(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+	}
+
+	@Test
+	void open() {
+		fail();
+		Assertions.assertEquals(VCloudCircuitBreaker.State.CLOSED, breaker.getState(URL));
+		fail();
+		Assertions.assertEquals(VCloudCircuitBreaker.State.OPEN, breaker.getState(URL));
+		assertRejected();
+
+		// Same endpoint, other resource
+		Assertions.assertThrows(ValidationJsonException.class,
+				() -> breaker.acquire("https://vcloud.sample.com/api/sessions"));
+
+		// Other endpoint
+		breaker.acquire("https://other.sample.com/api/sessions");
+		Assertions.assertEquals(1, count(VCloudCircuitBreaker.State.OPEN));
+	}
+
+	@Test
+	void successResetFailures() {
+		fail();
+		breaker.acquire(URL);
+		breaker.record(URL, HttpStatus.SC_OK);
+		fail();
+		Assertions.assertEquals(VCloudCircuitBreaker.State.CLOSED, breaker.getState(URL));
+	}
+
+	@Test
+	void halfOpenSuccess() {
+		fail();
+		fail();
+		ReflectionTestUtils.setField(breaker, "openDelay", 0L);
+
+		// Single trial request
+		breaker.acquire(URL);
+		Assertions.assertEquals(VCloudCircuitBreaker.State.HALF_OPEN, breaker.getState(URL));
+		assertRejected();
+		breaker.record(URL, HttpStatus.SC_OK);
+		Assertions.assertEquals(VCloudCircuitBreaker.State.CLOSED, breaker.getState(URL));
+		breaker.acquire(URL);
+		Assertions.assertEquals(1, count(VCloudCircuitBreaker.State.HALF_OPEN));
+		Assertions.assertEquals(1, count(VCloudCircuitBreaker.State.CLOSED));
+	}
+
+	@Test
+	void halfOpenFailure() {
+		fail();
+		fail();
+		ReflectionTestUtils.setField(breaker, "openDelay", 0L);
+		fail();
+		Assertions.assertEquals(VCloudCircuitBreaker.State.OPEN, breaker.getState(URL));
+		Assertions.assertEquals(2, count(VCloudCircuitBreaker.State.OPEN));
+	}
+
+	@Test
+	void disabled() {
+		ReflectionTestUtils.setField(breaker, "threshold", 0);
+		fail();
+		fail();
+		fail();
+		breaker.acquire(URL);
+		Assertions.assertEquals(VCloudCircuitBreaker.State.CLOSED, breaker.getState(URL));
+	}
+
+	@Test
+	void clear() {
+		fail();
+		fail();
+		breaker.clear();
+		breaker.acquire(URL);
+		Assertions.assertEquals(VCloudCircuitBreaker.State.CLOSED, breaker.getState(URL));
+	}
+}
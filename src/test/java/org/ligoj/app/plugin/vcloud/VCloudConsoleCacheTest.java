@@ -0,0 +1,122 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+/**
+ * Test class of {@link VCloudConsoleCache}
+ */
+class VCloudConsoleCacheTest {
+
+	private static final String API = "https://vcloud.sample.com/api";
+
+	private VCloudConsoleCache cache;
+
+	@BeforeEach
+	void prepare() {
+		cache = new VCloudConsoleCache();
+		ReflectionTestUtils.setField(cache, "ttl", 5000L);
+		ReflectionTestUtils.setField(cache, "maxSize", 100L);
+	}
+
+	@Test
+	void put() throws IOException {
+		final var frame = cache.put(API, "vm", new byte[] { 1, 2, 3 });
+		Assertions.assertSame(frame, cache.get(API, "vm", 0));
+		Assertions.assertNull(cache.get(API, "vm", 10));
+		Assertions.assertNull(cache.get(API, "other", 0));
+		Assertions.assertEquals(3, cache.size());
+		Assertions.assertEquals(32, frame.etag().length());
+
+		// Written twice without consuming the buffer
+		final var output = new ByteArrayOutputStream();
+		frame.write(output);
+		frame.write(output);
+		Assertions.assertArrayEquals(new byte[] { 1, 2, 3, 1, 2, 3 }, output.toByteArray());
+
+		// Same content, same tag
+		Assertions.assertEquals(frame.etag(), cache.put(API, "vm", new byte[] { 1, 2, 3 }).etag());
+		Assertions.assertEquals(3, cache.size());
+	}
+
+	@Test
+	void matches() {
+		final var frame = cache.put(API, "vm", new byte[] { 1, 2, 3 });
+		final var etag = "\"" + frame.etag() + "\"";
+		Assertions.assertTrue(frame.matches(etag));
+		Assertions.assertTrue(frame.matches("W/" + etag));
+		Assertions.assertTrue(frame.matches("\"other\", " + etag));
+		Assertions.assertTrue(frame.matches("*"));
+		Assertions.assertFalse(frame.matches(null));
+		Assertions.assertFalse(frame.matches(""));
+		Assertions.assertFalse(frame.matches("\"other\""));
+
+		// Exact comparison of each tag
+		Assertions.assertFalse(frame.matches(frame.etag()));
+		Assertions.assertFalse(frame.matches("\"x" + frame.etag() + "\""));
+		Assertions.assertFalse(frame.matches("\"" + frame.etag().substring(1) + "\""));
+	}
+
+	@Test
+	void getExpired() {
+		cache.put(API, "vm", new byte[] { 1 });
+		ReflectionTestUtils.setField(cache, "ttl", -1L);
+		Assertions.assertNull(cache.get(API, "vm", 0));
+	}
+
+	@Test
+	void evict() {
+		cache.put(API, "vm1", new byte[40]);
+		cache.put(API, "vm2", new byte[40]);
+
+		// Touch the first one, the second one is the least recently used
+		Assertions.assertNotNull(cache.get(API, "vm1", 0));
+		cache.put(API, "vm3", new byte[40]);
+		Assertions.assertNotNull(cache.get(API, "vm1", 0));
+		Assertions.assertNull(cache.get(API, "vm2", 0));
+		Assertions.assertNotNull(cache.get(API, "vm3", 0));
+		Assertions.assertEquals(80, cache.size());
+
+		// Larger than the cache, kept alone
+		cache.put(API, "vm4", new byte[200]);
+		Assertions.assertNotNull(cache.get(API, "vm4", 0));
+		Assertions.assertEquals(200, cache.size());
+
+		cache.clear();
+		Assertions.assertEquals(0, cache.size());
+	}
+
+	@Test
+	void getThumbnail() throws IOException {
+		ReflectionTestUtils.setField(cache, "maxSize", 10_000_000L);
+		final var screen = cache.put(API, "vm", IOUtils
+				.toByteArray(new ClassPathResource("mock-server/vcloud/vcloud-console.png").getInputStream()));
+		final var thumbnail = cache.getThumbnail(API, "vm", screen, 200);
+		Assertions.assertNotSame(screen, thumbnail);
+		Assertions.assertTrue(thumbnail.size() < screen.size());
+		Assertions.assertSame(thumbnail, cache.getThumbnail(API, "vm", screen, 200));
+
+		// A new screenshot invalidates the thumbnails
+		final var screen2 = cache.put(API, "vm", IOUtils
+				.toByteArray(new ClassPathResource("mock-server/vcloud/vcloud-console.png").getInputStream()));
+		Assertions.assertNull(cache.get(API, "vm", 200));
+		Assertions.assertEquals(thumbnail.etag(), cache.getThumbnail(API, "vm", screen2, 200).etag());
+	}
+
+	@Test
+	void getThumbnailNotImage() {
+		final var screen = cache.put(API, "vm", new byte[] { 1, 2, 3 });
+		Assertions.assertSame(screen, cache.getThumbnail(API, "vm", screen, 200));
+		Assertions.assertSame(screen, cache.toThumbnail(screen, 5000));
+	}
+}
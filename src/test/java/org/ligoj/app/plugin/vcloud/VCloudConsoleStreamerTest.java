@@ -0,0 +1,210 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Test class of {@link VCloudConsoleStreamer}
+ */
+class VCloudConsoleStreamerTest {
+
+	private VCloudConsoleStreamer streamer;
+
+	private VCloudConsoleCache cache;
+
+	@BeforeEach
+	void prepare() {
+		cache = new VCloudConsoleCache();
+		ReflectionTestUtils.setField(cache, "ttl", 5000L);
+		ReflectionTestUtils.setField(cache, "maxSize", 1000L);
+		streamer = new VCloudConsoleStreamer();
+		ReflectionTestUtils.setField(streamer, "interval", 10L);
+		ReflectionTestUtils.setField(streamer, "duration", 300L);
+		ReflectionTestUtils.setField(streamer, "heartbeat", 10000L);
+	}
+
+	@AfterEach
+	void destroy() {
+		streamer.destroy();
+	}
+
+	/**
+	 * Screen changing every 5 polls: 0,0,0,0,0,1,1,...
+	 */
+	private Supplier<VCloudConsoleCache.Frame> newLoader(final AtomicInteger polls) {
+		return () -> cache.put("api", "vm", new byte[] { (byte) (polls.getAndIncrement() / 5) });
+	}
+
+	/**
+	 * Screen changing every 5 polls, recording the poller thread and counting down the latch on each poll.
+	 */
+	private Supplier<VCloudConsoleCache.Frame> newLoader(final AtomicInteger polls, final CountDownLatch polled,
+			final AtomicReference<Thread> poller) {
+		final var loader = newLoader(polls);
+		return () -> {
+			poller.set(Thread.currentThread());
+			polled.countDown();
+			return loader.get();
+		};
+	}
+
+	private String stream(final Supplier<VCloudConsoleCache.Frame> loader) throws IOException {
+		final var output = new ByteArrayOutputStream();
+		streamer.stream("api##vm", loader, output);
+		return output.toString(StandardCharsets.ISO_8859_1);
+	}
+
+	@Test
+	void stream() throws IOException {
+		final var polls = new AtomicInteger();
+		final var stream = stream(newLoader(polls));
+		final var parts = StringUtils.countMatches(stream, "--vcloud-console\r\n");
+		Assertions.assertTrue(parts > 1);
+		Assertions.assertTrue(parts <= polls.get() / 5 + 1);
+		Assertions.assertTrue(stream.startsWith("--vcloud-console\r\nContent-Type: image/png\r\nContent-Length: 1\r\n\r\n"
+				+ (char) 0 + "\r\n--vcloud-console\r\nContent-Type: image/png\r\nContent-Length: 1\r\n\r\n" + (char) 1));
+		Assertions.assertTrue(streamer.getSkipped() > 0);
+		Assertions.assertTrue(stream.endsWith("\r\n--vcloud-console--\r\n"));
+	}
+
+	@Test
+	void streamHeartbeat() throws IOException {
+		ReflectionTestUtils.setField(streamer, "heartbeat", 30L);
+		final var stream = stream(() -> cache.put("api", "vm", new byte[] { 0 }));
+
+		// The unchanged screenshot is sent again at the heartbeat rate
+		Assertions.assertTrue(streamer.getSkipped() > 0);
+		Assertions.assertTrue(StringUtils.countMatches(stream, "--vcloud-console\r\n") > 3);
+		Assertions.assertTrue(stream.endsWith("--vcloud-console--\r\n"));
+	}
+
+	@Test
+	void streamHeartbeatNotAvailable() throws IOException {
+		ReflectionTestUtils.setField(streamer, "heartbeat", 30L);
+		final var stream = stream(() -> null);
+
+		// Only the preamble is written before the first screenshot
+		Assertions.assertTrue(stream.startsWith("\r\n\r\n"));
+		Assertions.assertEquals("--vcloud-console--\r\n", StringUtils.strip(stream, "\r\n") + "\r\n");
+	}
+
+	@Test
+	void streamHeartbeatDisconnected() {
+		ReflectionTestUtils.setField(streamer, "heartbeat", 30L);
+		ReflectionTestUtils.setField(streamer, "duration", 60000L);
+		final var writes = new AtomicInteger();
+		final var output = new OutputStream() {
+			@Override
+			public void write(final int b) throws IOException {
+				throw new IOException("Disconnected");
+			}
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				if (writes.incrementAndGet() > 3) {
+					throw new IOException("Disconnected");
+				}
+			}
+		};
+
+		// The disconnection is detected before the end of the stream, without a screen change
+		final var start = System.currentTimeMillis();
+		Assertions.assertThrows(IOException.class,
+				() -> streamer.stream("api##vm", () -> cache.put("api", "vm", new byte[] { 0 }), output));
+		Assertions.assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+
+	@Test
+	void streamSharedPoller() throws Exception {
+		final var polled = new CountDownLatch(1);
+		final var loader = newLoader(new AtomicInteger(), polled, new AtomicReference<>());
+		final Future<String> viewer1;
+		final Future<String> viewer2;
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			viewer1 = executor.submit(() -> stream(loader));
+			Assertions.assertTrue(polled.await(10, TimeUnit.SECONDS));
+			viewer2 = executor.submit(() -> stream(() -> {
+				throw new IllegalStateException("Not shared");
+			}));
+		}
+
+		// Both viewers received the same screenshots from a single poller
+		Assertions.assertTrue(viewer1.get().contains("--vcloud-console"));
+		Assertions.assertTrue(viewer2.get().contains("--vcloud-console"));
+	}
+
+	@Test
+	void streamNotAvailable() throws IOException {
+		ReflectionTestUtils.setField(streamer, "duration", 50L);
+		Assertions.assertEquals("--vcloud-console--\r\n", stream(() -> null));
+		Assertions.assertEquals("--vcloud-console--\r\n", stream(() -> {
+			throw new IllegalStateException();
+		}));
+	}
+
+	@Test
+	void streamDisconnected() {
+		final var polls = new AtomicInteger();
+		final var output = new OutputStream() {
+			@Override
+			public void write(final int b) throws IOException {
+				throw new IOException("Disconnected");
+			}
+		};
+		Assertions.assertThrows(IOException.class, () -> streamer.stream("api##vm", newLoader(polls), output));
+	}
+
+	@Test
+	void stopped() throws Exception {
+		final var polled = new CountDownLatch(1);
+		final var poller = new AtomicReference<Thread>();
+		final var loader = newLoader(new AtomicInteger(), polled, poller);
+		ReflectionTestUtils.setField(streamer, "duration", 60000L);
+		final Future<String> viewer;
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			viewer = executor.submit(() -> stream(loader));
+			Assertions.assertTrue(polled.await(10, TimeUnit.SECONDS));
+			Assertions.assertEquals(1, streamer.getPollers());
+			streamer.clear();
+		}
+		Assertions.assertTrue(viewer.get().startsWith("--vcloud-console"));
+		Assertions.assertTrue(viewer.get().endsWith("--vcloud-console--\r\n"));
+		Assertions.assertEquals(0, streamer.getPollers());
+
+		// The poller is stopped, at most after its current poll
+		Assertions.assertTrue(poller.get().join(Duration.ofSeconds(10)));
+	}
+
+	@Test
+	void noMoreViewer() throws Exception {
+		ReflectionTestUtils.setField(streamer, "duration", 50L);
+		final var polled = new CountDownLatch(1);
+		final var poller = new AtomicReference<Thread>();
+		stream(newLoader(new AtomicInteger(), polled, poller));
+
+		// The poller stops by itself after its current poll
+		Assertions.assertTrue(polled.await(10, TimeUnit.SECONDS));
+		Assertions.assertTrue(poller.get().join(Duration.ofSeconds(10)));
+		Assertions.assertEquals(0, streamer.getPollers());
+	}
+}
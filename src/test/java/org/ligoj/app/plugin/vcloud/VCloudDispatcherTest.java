@@ -0,0 +1,135 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class of {@link VCloudDispatcher}
+ */
+class VCloudDispatcherTest {
+
+	private static final String TENANT_A = VCloudRateLimiter.toKey("https://a.sample.com:443/api", "org");
+
+	private static final String TENANT_B = VCloudRateLimiter.toKey("https://b.sample.com:443/api", "org");
+
+	private VCloudDispatcher dispatcher;
+
+	private VCloudMetrics metrics;
+
+	@BeforeEach
+	void prepare() {
+		metrics = new VCloudMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		dispatcher = new VCloudDispatcher();
+		ReflectionTestUtils.setField(dispatcher, "window", 500L);
+		ReflectionTestUtils.setField(dispatcher, "metrics", metrics);
+		dispatcher.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void destroy() {
+		dispatcher.destroy();
+	}
+
+	@Test
+	void dispatchDisabled() {
+		ReflectionTestUtils.setField(dispatcher, "window", 0L);
+		Assertions.assertFalse(dispatcher.isEnabled());
+		final var threads = new ArrayList<Thread>();
+		for (var i = 0; i < 100; i++) {
+			dispatcher.dispatch(TENANT_A, () -> threads.add(Thread.currentThread()));
+		}
+
+		// Run immediately in the calling thread
+		Assertions.assertEquals(Collections.nCopies(100, Thread.currentThread()), threads);
+		Assertions.assertNull(metrics.getRegistry().find(VCloudMetrics.DISPATCH_WAIT).timer());
+	}
+
+	@Test
+	void dispatchAlone() throws Exception {
+		Assertions.assertTrue(dispatcher.isEnabled());
+		final var released = new CompletableFuture<Thread>();
+		dispatcher.dispatch(TENANT_A, () -> released.complete(Thread.currentThread()));
+		Assertions.assertTrue(released.get(10, TimeUnit.SECONDS).isVirtual());
+		Assertions.assertEquals(1, metrics.getRegistry().find(VCloudMetrics.DISPATCH_WAIT)
+				.tag("endpoint", "https://a.sample.com:443").timer().count());
+	}
+
+	@Test
+	void dispatchFailed() throws Exception {
+		final var released = new CountDownLatch(2);
+		dispatcher.dispatch(TENANT_A, () -> {
+			released.countDown();
+			throw new IllegalStateException();
+		});
+		dispatcher.dispatch(TENANT_A, released::countDown);
+
+		// The failure does not break the next releases
+		Assertions.assertTrue(released.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void dispatchBurst() throws Exception {
+		final var released = Collections.synchronizedList(new ArrayList<String>());
+		final var done = new CountDownLatch(18);
+
+		// A big tenant, then a small one
+		for (var i = 0; i < 16; i++) {
+			dispatcher.dispatch(TENANT_A, () -> release(TENANT_A, released, done));
+		}
+		for (var i = 0; i < 2; i++) {
+			dispatcher.dispatch(TENANT_B, () -> release(TENANT_B, released, done));
+		}
+		Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(18, released.size());
+		Assertions.assertEquals(0, dispatcher.getPending());
+
+		// The small tenant is not starved by the big one
+		Assertions.assertTrue(released.indexOf(TENANT_B) < 10, released::toString);
+		Assertions.assertTrue(released.lastIndexOf(TENANT_B) < 12, released::toString);
+		Assertions.assertEquals(18, metrics.getRegistry().find(VCloudMetrics.DISPATCH_WAIT).timers().stream()
+				.mapToLong(t -> t.count()).sum());
+	}
+
+	private void release(final String tenant, final List<String> released, final CountDownLatch done) {
+		released.add(tenant);
+		done.countDown();
+	}
+
+	@Test
+	void dispatchCleared() throws Exception {
+		ReflectionTestUtils.setField(dispatcher, "window", 600000L);
+		final var first = new CountDownLatch(1);
+		final var released = Collections.synchronizedList(new ArrayList<String>());
+		final var done = new CountDownLatch(2);
+
+		// The first one is released immediately, the next ones wait
+		dispatcher.dispatch(TENANT_A, first::countDown);
+		Assertions.assertTrue(first.await(10, TimeUnit.SECONDS));
+		dispatcher.dispatch(TENANT_A, () -> release(TENANT_A, released, done));
+		dispatcher.dispatch(TENANT_B, () -> release(TENANT_B, released, done));
+		Assertions.assertEquals(2, dispatcher.getPending());
+		Assertions.assertEquals(2, metrics.getRegistry().find(VCloudMetrics.DISPATCH_QUEUE).gauge().value());
+		Assertions.assertEquals(0, released.size());
+
+		// Stop the dispatcher, the waiting executions are released
+		dispatcher.clear();
+		Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(2, released.size());
+		Assertions.assertEquals(0, dispatcher.getPending());
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class of {@link VCloudInventory}
+ */
+class VCloudInventoryTest {
+
+	private VCloudInventory inventory;
+
+	@BeforeEach
+	void prepare() {
+		inventory = new VCloudInventory();
+		inventory.update("node", List.of(newVm("web-02"), newVm("Web-01"), newVm("db-01"), newVm("backup"),
+				newVm(null)));
+	}
+
+	private VCloudVm newVm(final String name) {
+		final var vm = new VCloudVm();
+		vm.setName(name);
+		return vm;
+	}
+
+	private List<String> find(final String criteria) {
+		return inventory.find("node", criteria).get(0, Integer.MAX_VALUE).stream().map(VCloudVm::getName).toList();
+	}
+
+	@Test
+	void find() {
+		Assertions.assertEquals(List.of("Web-01", "web-02"), find("WEB"));
+		Assertions.assertEquals(List.of("db-01", "Web-01"), find("-01"));
+		Assertions.assertEquals(List.of("web-02"), find("eb-02"));
+		Assertions.assertEquals(List.of("backup"), find("ckup"));
+	}
+
+	@Test
+	void findShort() {
+		Assertions.assertEquals(List.of("db-01", "Web-01", "web-02"), find("-0"));
+		Assertions.assertEquals(5, find("").size());
+		Assertions.assertEquals(5, find(null).size());
+	}
+
+	@Test
+	void findMixedCase() {
+		inventory.update("node3", List.of(newVm("beta-1"), newVm("alpha-3"), newVm("ALPHA-2"), newVm("Alpha-1"),
+				newVm("alpha-1")));
+		final var names = inventory.find("node3", "").get(0, Integer.MAX_VALUE).stream().map(VCloudVm::getName)
+				.toList();
+		Assertions.assertEquals(List.of("Alpha-1", "alpha-1", "ALPHA-2", "alpha-3", "beta-1"), names);
+	}
+
+	@Test
+	void findNoMatch() {
+		Assertions.assertTrue(find("xyz").isEmpty());
+		Assertions.assertTrue(find("web-03").isEmpty());
+	}
+
+	@Test
+	void findPage() {
+		final var matches = inventory.find("node", "-0");
+		Assertions.assertEquals(3, matches.size());
+		Assertions.assertEquals(List.of("Web-01"), matches.get(1, 2).stream().map(VCloudVm::getName).toList());
+		Assertions.assertEquals(List.of("web-02"), matches.get(2, 10).stream().map(VCloudVm::getName).toList());
+		Assertions.assertTrue(matches.get(5, 10).isEmpty());
+
+		// New beans on each page
+		Assertions.assertNotSame(matches.get(0, 1).getFirst(), matches.get(0, 1).getFirst());
+	}
+
+	@Test
+	void setStatus() {
+		final var vm = newVm("app-01");
+		vm.setId("75aa69b4-8cff-40cd-9338-000000000000");
+		vm.setStatus(VmStatus.POWERED_OFF);
+		vm.setBusy(true);
+		inventory.update("node2", List.of(newVm("app-02"), vm));
+		final var synced = inventory.getLastSync("node2");
+		inventory.setStatus("75aa69b4-8cff-40cd-9338-000000000000", VmStatus.SUSPENDED, true);
+		inventory.setStatus("75aa69b4-8cff-40cd-9338-000000000001", VmStatus.POWERED_ON, true);
+
+		final var updated = inventory.find("node2", "app-01").get(0, 1).getFirst();
+		Assertions.assertEquals(VmStatus.SUSPENDED, updated.getStatus());
+		Assertions.assertTrue(updated.isDeployed());
+		Assertions.assertFalse(updated.isBusy());
+		Assertions.assertNull(inventory.find("node2", "app-02").get(0, 1).getFirst().getStatus());
+		Assertions.assertEquals(synced, inventory.getLastSync("node2"));
+	}
+
+	@Test
+	void findNotSynchronized() {
+		Assertions.assertNull(inventory.find("other", "web"));
+		Assertions.assertEquals(0, inventory.getLastSync("other"));
+		Assertions.assertEquals(0, inventory.size("other"));
+		Assertions.assertEquals(5, inventory.size("node"));
+		Assertions.assertTrue(inventory.getLastSync("node") > 0);
+		inventory.clear();
+		Assertions.assertNull(inventory.find("node", "web"));
+	}
+
+	@Test
+	void findStale() {
+		ReflectionTestUtils.setField(inventory, "refresh", 60000L);
+		Assertions.assertNotNull(inventory.find("node", "web"));
+
+		// Stale after twice the refresh period without synchronization
+		ReflectionTestUtils.setField(inventory, "refresh", 1L);
+		final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (inventory.find("node", "web") != null && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		Assertions.assertNull(inventory.find("node", "web"));
+	}
+}
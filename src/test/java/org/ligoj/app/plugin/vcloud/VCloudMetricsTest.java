@@ -0,0 +1,50 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Test class of {@link VCloudMetrics}
+ */
+class VCloudMetricsTest {
+
+	@Test
+	void toOperation() {
+		Assertions.assertEquals("login", VCloudMetrics.toOperation("POST", "https://vcloud/api/sessions"));
+		Assertions.assertEquals("power", VCloudMetrics.toOperation("POST", "https://vcloud/api/vApp/vm-1/power/action/powerOn"));
+		Assertions.assertEquals("undeploy", VCloudMetrics.toOperation("POST", "https://vcloud/api/vApp/vm-1/action/undeploy"));
+		Assertions.assertEquals("probe", VCloudMetrics.toOperation("GET", "https://vcloud/api/session"));
+		Assertions.assertEquals("logout", VCloudMetrics.toOperation("DELETE", "https://vcloud/api/session"));
+		Assertions.assertEquals("query", VCloudMetrics.toOperation("GET", "https://vcloud/api/query?type=vm"));
+		Assertions.assertEquals("admin", VCloudMetrics.toOperation("GET", "https://vcloud/api/admin"));
+		Assertions.assertEquals("screen", VCloudMetrics.toOperation("GET", "https://vcloud/api/vApp/vm-1/screen"));
+		Assertions.assertEquals("task", VCloudMetrics.toOperation("GET", "https://vcloud/api/task/42"));
+		Assertions.assertEquals("other", VCloudMetrics.toOperation("GET", "https://vcloud/api/org"));
+		Assertions.assertEquals("other", VCloudMetrics.toOperation("POST", "https://vcloud/api/org"));
+	}
+
+	@Test
+	void record() {
+		final var metrics = new VCloudMetrics();
+		final var registry = new SimpleMeterRegistry();
+		ReflectionTestUtils.setField(metrics, "registry", registry);
+		metrics.recordRequest("GET", "https://vcloud:443/api/query", 200, 1024, 1000000);
+		metrics.recordRequest("GET", "https://vcloud:443/api/query", 200, 2048, 3000000);
+		metrics.recordSession("https://vcloud:443/api/sessions", true);
+		metrics.recordSession("https://vcloud:443/api/sessions", false);
+		metrics.recordParse("https://vcloud:443/api/query", 500000);
+
+		final var timer = registry.find(VCloudMetrics.REQUEST).tag("operation", "query").tag("status", "200")
+				.tag("endpoint", "https://vcloud:443").timer();
+		Assertions.assertEquals(2, timer.count());
+		Assertions.assertEquals(3072, registry.find(VCloudMetrics.RESPONSE_SIZE).summary().totalAmount());
+		Assertions.assertEquals(1, registry.find(VCloudMetrics.SESSION).tag("result", "hit").counter().count());
+		Assertions.assertEquals(1, registry.find(VCloudMetrics.SESSION).tag("result", "miss").counter().count());
+		Assertions.assertEquals(1, registry.find(VCloudMetrics.PARSE).timer().count());
+	}
+}
@@ -3,10 +3,15 @@
  */
 package org.ligoj.app.plugin.vcloud;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.http.Fault;
 import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.core5.http.HttpStatus;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,26 +19,45 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.ligoj.app.AbstractServerTest;
 import org.ligoj.app.dao.SubscriptionRepository;
+import org.ligoj.app.iam.model.ReceiverType;
 import org.ligoj.app.model.*;
 import org.ligoj.app.plugin.vm.execution.Vm;
 import org.ligoj.app.plugin.vm.model.VmExecution;
 import org.ligoj.app.plugin.vm.model.VmOperation;
+import org.ligoj.app.plugin.vm.model.VmSchedule;
 import org.ligoj.app.plugin.vm.model.VmStatus;
 import org.ligoj.app.resource.node.ParameterValueResource;
 import org.ligoj.app.resource.subscription.SubscriptionResource;
 import org.ligoj.bootstrap.MatcherUtil;
 import org.ligoj.bootstrap.core.resource.BusinessException;
 import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.ligoj.bootstrap.resource.system.configuration.ConfigurationResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 
@@ -57,6 +81,42 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 	@Autowired
 	private SubscriptionRepository subscriptionRepository;
 
+	@Autowired
+	private VCloudConnectionManager connectionManager;
+
+	@Autowired
+	private VCloudVmCache vmCache;
+
+	@Autowired
+	private VCloudSessionManager sessionManager;
+
+	@Autowired
+	private VCloudMetrics metrics;
+
+	@Autowired
+	private VCloudInventory inventory;
+
+	@Autowired
+	private ConfigurationResource configuration;
+
+	@Autowired
+	private VCloudCircuitBreaker breaker;
+
+	@Autowired
+	private VCloudRateLimiter rateLimiter;
+
+	@Autowired
+	private VCloudConsoleCache consoleCache;
+
+	@Autowired
+	private VCloudConsoleStreamer consoleStreamer;
+
+	@Autowired
+	private VCloudDispatcher dispatcher;
+
+	@Autowired
+	private VCloudTaskTracker tracker;
+
 	protected int subscription;
 
 	@BeforeEach
@@ -72,6 +132,14 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 
 		// Invalidate vCloud cache
 		clearAllCache();
+		vmCache.clear();
+		sessionManager.clear();
+		inventory.clear();
+		resource.clearStatus();
+		breaker.clear();
+		rateLimiter.clear();
+		consoleCache.clear();
+		consoleStreamer.clear();
 	}
 
 	/**
@@ -101,6 +169,80 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		Assertions.assertTrue(lastVersion.compareTo("2017") >= 0);
 	}
 
+	private VCloudLastVersion newLastVersion() {
+		final var lastVersion = new VCloudLastVersion();
+		ReflectionTestUtils.setField(lastVersion, "url", "http://localhost:8120/versions");
+		ReflectionTestUtils.setField(lastVersion, "ttl", 86400000L);
+		ReflectionTestUtils.setField(lastVersion, "timeout", 1000);
+		ReflectionTestUtils.setField(lastVersion, "configuration", configuration);
+		ReflectionTestUtils.setField(lastVersion, "connectionManager", connectionManager);
+		ReflectionTestUtils.setField(lastVersion, "metrics", metrics);
+		return lastVersion;
+	}
+
+	@Test
+	void getLastVersionConditional() throws IOException {
+		httpServer.stubFor(get(urlEqualTo("/versions")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withHeader("ETag", "\"v1\"").withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/downloads.json").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.stubFor(get(urlEqualTo("/versions")).withHeader("If-None-Match", equalTo("\"v1\""))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_NOT_MODIFIED)));
+		httpServer.start();
+
+		final var lastVersion = newLastVersion();
+		Assertions.assertEquals("2017", lastVersion.get());
+		Assertions.assertEquals("2017", configuration.get(VCloudLastVersion.CONFIGURATION));
+
+		// Not modified
+		lastVersion.refresh();
+		Assertions.assertEquals("2017", lastVersion.get());
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/versions")).withHeader("If-None-Match", equalTo("\"v1\"")));
+	}
+
+	@Test
+	void getLastVersionConcurrent() throws Exception {
+		httpServer.stubFor(get(urlEqualTo("/versions")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withFixedDelay(200).withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/downloads.json").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		// The first callers wait for the same load
+		final var lastVersion = newLastVersion();
+		final var versions = new ArrayList<String>();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			final var futures = new ArrayList<Future<String>>();
+			for (var i = 0; i < 10; i++) {
+				futures.add(executor.submit(lastVersion::get));
+			}
+			for (final var future : futures) {
+				versions.add(future.get());
+			}
+		}
+		Assertions.assertEquals(Collections.nCopies(10, "2017"), versions);
+		httpServer.verify(1,
+				getRequestedFor(urlEqualTo("/versions")).withHeader("Accept", equalTo("application/json")));
+	}
+
+	@Test
+	void getLastVersionPersisted() {
+		configuration.put(VCloudLastVersion.CONFIGURATION, "2016");
+		httpServer.start();
+		Assertions.assertEquals("2016", newLastVersion().get());
+	}
+
+	@Test
+	void getLastVersionOffline() {
+		httpServer.start();
+		final var lastVersion = newLastVersion();
+		Assertions.assertNull(lastVersion.get());
+
+		// No more synchronous attempt
+		Assertions.assertNull(lastVersion.get());
+		httpServer.verify(1, getRequestedFor(urlEqualTo("/versions")));
+	}
+
 	@Test
 	void link() throws Exception {
 		prepareMockItem();
@@ -113,6 +255,13 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		// Nothing to validate for now...
 	}
 
+	@Test
+	void getClientSharedByEndpoint() {
+		final var client = connectionManager.getClient("http://localhost:8120/api");
+		Assertions.assertSame(client, connectionManager.getClient("http://localhost:8120/api/query"));
+		Assertions.assertNotSame(client, connectionManager.getClient("http://localhost:8121/api"));
+	}
+
 	@Test
 	void getVmDetailsNotFound() {
 		prepareMockHome();
@@ -140,6 +289,357 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		Assertions.assertTrue(vm.isDeployed());
 	}
 
+	@Test
+	void getVmDetailsAsync() throws Exception {
+		prepareMockItem();
+
+		final Map<String, String> parameters = new HashMap<>(
+				pvResource.getNodeParameters("service:vm:vcloud:obs-fca-info"));
+		parameters.put(VCloudPluginResource.PARAMETER_VM, "75aa69b4-8cff-40cd-9338-000000000000");
+		final var vm = resource.getVmDetailsAsync(parameters).get();
+		checkVm(vm);
+
+		// Shared cache with the blocking API
+		Assertions.assertSame(vm, resource.getVmDetails(parameters));
+		Assertions.assertSame(vm, resource.getVmDetailsAsync(parameters).get());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void getVmDetailsAsyncNotFound() {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<a/>")));
+		httpServer.start();
+
+		final Map<String, String> parameters = new HashMap<>(
+				pvResource.getNodeParameters("service:vm:vcloud:obs-fca-info"));
+		parameters.put(VCloudPluginResource.PARAMETER_VM, "0");
+		final var future = resource.getVmDetailsAsync(parameters);
+		final var e = Assertions.assertThrows(ExecutionException.class, future::get);
+		MatcherUtil.assertThrows((ValidationJsonException) e.getCause(), VCloudPluginResource.PARAMETER_VM,
+				"vcloud-vm");
+	}
+
+	@Test
+	void getVmDetailsAsyncSessionExpired() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).inScenario("session")
+				.whenScenarioStateIs(Scenario.STARTED)
+				.willReturn(aResponse().withStatus(HttpStatus.SC_UNAUTHORIZED)).willSetStateTo("expired"));
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).inScenario("session").whenScenarioStateIs("expired")
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(IOUtils.toString(new ClassPathResource(
+								"mock-server/vcloud/vcloud-query-vm-poweredoff-deployed.xml").getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		checkVm(resource.getVmDetailsAsync(subscriptionResource.getParametersNoCheck(subscription)).get());
+		httpServer.verify(2, postRequestedFor(urlPathEqualTo("/api/sessions")));
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void getVmDetailsJson() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).withHeader("Accept", containing("+json"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withHeader("Content-Type", "application/vnd.vmware.vcloud.query.records+json;version=33.0")
+						.withBody(IOUtils.toString(
+								new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredoff.json")
+										.getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final Map<String, String> parameters = new HashMap<>(subscriptionResource.getParametersNoCheck(subscription));
+		parameters.put(VCloudPluginResource.PARAMETER_JSON, "true");
+		checkVm(resource.getVmDetails(parameters));
+		vmCache.clear();
+		checkVm(resource.getVmDetailsAsync(parameters).get());
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")).withHeader("Accept",
+				equalTo("application/*+json;version=33.0")));
+	}
+
+	@Test
+	void getVmDetailsJsonNotSupported() throws Exception {
+		prepareMockItem();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).withHeader("Accept", containing("+json"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_NOT_ACCEPTABLE)));
+
+		final Map<String, String> parameters = new HashMap<>(subscriptionResource.getParametersNoCheck(subscription));
+		parameters.put(VCloudPluginResource.PARAMETER_JSON, "true");
+		checkVm(resource.getVmDetails(parameters));
+		vmCache.clear();
+		checkVm(resource.getVmDetailsAsync(parameters).get());
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")).withHeader("Accept",
+				equalTo(VCloudCurlProcessor.ACCEPT)));
+	}
+
+	@Test
+	void getVmDetailsCached() throws Exception {
+		prepareMockItem();
+
+		final Map<String, String> parameters = new HashMap<>(
+				pvResource.getNodeParameters("service:vm:vcloud:obs-fca-info"));
+		parameters.put(VCloudPluginResource.PARAMETER_VM, "75aa69b4-8cff-40cd-9338-000000000000");
+		final var vm = resource.getVmDetails(parameters);
+		Assertions.assertSame(vm, resource.getVmDetails(parameters));
+		Assertions.assertSame(vm, resource.getVmDetails(List.of(subscription)).get(subscription));
+
+		final var statistics = resource.getVmCacheStatistics();
+		Assertions.assertEquals(2, statistics.getHits());
+		Assertions.assertEquals(1, statistics.getMisses());
+		Assertions.assertEquals(1, statistics.getSize());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")));
+
+		// Not shared with other credentials
+		final var other = new HashMap<>(parameters);
+		other.put(VCloudPluginResource.PARAMETER_PASSWORD, "other");
+		Assertions.assertNotSame(vm, resource.getVmDetails(other));
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")));
+
+		// Invalidate the cache, whatever the credentials
+		vmCache.invalidate("http://localhost:8120/api", "75aa69b4-8cff-40cd-9338-000000000000");
+		Assertions.assertEquals(0, resource.getVmCacheStatistics().getSize());
+		Assertions.assertNotSame(vm, resource.getVmDetails(parameters));
+	}
+
+	@Test
+	void getVmDetailsMetrics() throws Exception {
+		prepareMockItem();
+		final var queries = count(VCloudMetrics.REQUEST, "query");
+		final var logins = count(VCloudMetrics.REQUEST, "login");
+
+		final Map<String, String> parameters = new HashMap<>(
+				pvResource.getNodeParameters("service:vm:vcloud:obs-fca-info"));
+		parameters.put(VCloudPluginResource.PARAMETER_VM, "75aa69b4-8cff-40cd-9338-000000000000");
+		resource.getVmDetails(parameters);
+		vmCache.clear();
+		resource.getVmDetails(parameters);
+
+		// One login for two queries
+		Assertions.assertEquals(queries + 2, count(VCloudMetrics.REQUEST, "query"));
+		Assertions.assertEquals(logins + 1, count(VCloudMetrics.REQUEST, "login"));
+		final var registry = metrics.getRegistry();
+		Assertions.assertTrue(registry.find(VCloudMetrics.SESSION).tag("result", "hit").counter().count() >= 1);
+		Assertions.assertTrue(registry.find(VCloudMetrics.RESPONSE_SIZE).tag("operation", "query").summary()
+				.totalAmount() > 0);
+		Assertions.assertTrue(registry.find(VCloudMetrics.PARSE).timer().count() >= 2);
+	}
+
+	private long count(final String name, final String operation) {
+		return metrics.getRegistry().find(name).tag("operation", operation).timers().stream()
+				.mapToLong(t -> t.count()).sum();
+	}
+
+	@Test
+	void getVmDetailsSessionExpired() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).inScenario("session")
+				.whenScenarioStateIs(Scenario.STARTED)
+				.willReturn(aResponse().withStatus(HttpStatus.SC_UNAUTHORIZED)).willSetStateTo("expired"));
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).inScenario("session").whenScenarioStateIs("expired")
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(IOUtils.toString(new ClassPathResource(
+								"mock-server/vcloud/vcloud-query-vm-poweredoff-deployed.xml").getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		checkVm(resource.getVmDetails(subscriptionResource.getParametersNoCheck(subscription)));
+		httpServer.verify(2, postRequestedFor(urlPathEqualTo("/api/sessions")));
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")));
+		Assertions.assertEquals(1, sessionManager.size());
+	}
+
+	@Test
+	void getVmDetailsThrottled() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).inScenario("throttle")
+				.whenScenarioStateIs(Scenario.STARTED).willReturn(aResponse()
+						.withStatus(HttpStatus.SC_TOO_MANY_REQUESTS).withHeader("Retry-After", "1"))
+				.willSetStateTo("throttled"));
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).inScenario("throttle").whenScenarioStateIs("throttled")
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(IOUtils.toString(new ClassPathResource(
+								"mock-server/vcloud/vcloud-query-vm-poweredoff-deployed.xml").getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		// The request waits for the "Retry-After" delay, then succeeds
+		final var start = System.currentTimeMillis();
+		checkVm(resource.getVmDetails(subscriptionResource.getParametersNoCheck(subscription)));
+		Assertions.assertTrue(System.currentTimeMillis() - start >= 900);
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")));
+		final var key = VCloudRateLimiter.toKey("http://localhost:8120/api", "FCA-INFO-FCA");
+		Assertions.assertTrue(rateLimiter.getRate(key) < 20);
+		Assertions.assertEquals(1, metrics.getRegistry().find(VCloudMetrics.THROTTLE).counter().count());
+	}
+
+	@Test
+	void executeAsyncThrottled() throws Exception {
+		httpServer
+				.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn"))
+						.inScenario("throttle").whenScenarioStateIs(Scenario.STARTED)
+						.willReturn(aResponse().withStatus(HttpStatus.SC_SERVICE_UNAVAILABLE))
+						.willSetStateTo("throttled"));
+		httpServer
+				.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn"))
+						.inScenario("throttle").whenScenarioStateIs("throttled")
+						.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<Task>...</Task>")));
+		prepareMockItem();
+		final var execution = resource.executeAsync(newExecution(VmOperation.ON)).get();
+		Assertions.assertEquals(VmOperation.ON, execution.getOperation());
+		httpServer.verify(2, postRequestedFor(
+				urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn")));
+	}
+
+	@Test
+	void toOrganization() {
+		Assertions.assertEquals("org", VCloudSessionManager.toOrganization(
+				Base64.getEncoder().encodeToString("user@domain@org:pass:@word".getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	void refreshSession() throws Exception {
+		prepareMockHome();
+		httpServer.start();
+		final var url = "http://localhost:8120/api/sessions";
+		Assertions.assertEquals("token", sessionManager.getToken(url, "auth"));
+
+		// Nothing to refresh
+		sessionManager.refresh();
+		httpServer.verify(1, postRequestedFor(urlPathEqualTo("/api/sessions")));
+
+		// Session used since its login and about to expire
+		httpServer.stubFor(delete(urlPathEqualTo("/api/session"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_NO_CONTENT)));
+		final var session = ((Map<?, ?>) ReflectionTestUtils.getField(sessionManager, "sessions")).values()
+				.iterator().next();
+		ReflectionTestUtils.setField(session, "used", (long) ReflectionTestUtils.getField(session, "created") + 1);
+		ReflectionTestUtils.setField(sessionManager, "margin", 1000000000L);
+		try {
+			sessionManager.refresh();
+			httpServer.verify(2, postRequestedFor(urlPathEqualTo("/api/sessions")));
+
+			// The replaced session is closed in background
+			await(() -> !httpServer.findAll(deleteRequestedFor(urlPathEqualTo("/api/session"))).isEmpty());
+			httpServer.verify(1, deleteRequestedFor(urlPathEqualTo("/api/session"))
+					.withHeader("x-vcloud-authorization", equalTo("token")));
+
+			// Login on the request path when the session is about to expire
+			sessionManager.getToken(url, "auth");
+			httpServer.verify(3, postRequestedFor(urlPathEqualTo("/api/sessions")));
+		} finally {
+			ReflectionTestUtils.setField(sessionManager, "margin", 120000L);
+		}
+		Assertions.assertEquals(1, sessionManager.size());
+	}
+
+	@Test
+	void getVmDetailsCoalesced() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withFixedDelay(1000)
+				.withBody(IOUtils.toString(new ClassPathResource(
+						"mock-server/vcloud/vcloud-query-vm-poweredoff-deployed.xml").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		final var executor = Executors.newFixedThreadPool(4);
+		try {
+			final var futures = executor
+					.invokeAll(Collections.nCopies(4, (Callable<VCloudVm>) () -> resource.getVmDetails(parameters)));
+			final var vm = futures.getFirst().get();
+			checkVm(vm);
+			for (final var future : futures) {
+				Assertions.assertSame(vm, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void getVmDetailsBusyNotCached() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/vcloud-query-vm-busy.xml").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		Assertions.assertTrue(resource.getVmDetails(parameters).isBusy());
+		Assertions.assertTrue(resource.getVmDetails(parameters).isBusy());
+		Assertions.assertEquals(0, resource.getVmCacheStatistics().getHits());
+		Assertions.assertEquals(0, resource.getVmCacheStatistics().getSize());
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void getVmDetailsBulk() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.withQueryParam("filter", equalTo("id==urn:vcloud:vm:75aa69b4-8cff-40cd-9338-000000000000"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(IOUtils.toString(new ClassPathResource(
+								"mock-server/vcloud/vcloud-query-vm-poweredoff-deployed.xml").getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final var vms = resource.getVmDetails(List.of(subscription, subscription));
+		Assertions.assertEquals(1, vms.size());
+		checkVm(vms.get(subscription));
+	}
+
+	@Test
+	void getVmDetailsBulkNotFound() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<a/>")));
+		httpServer.start();
+		Assertions.assertTrue(resource.getVmDetails(List.of(subscription)).isEmpty());
+	}
+
+	@Test
+	void getVmDetailsBulkOtherTool() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.withQueryParam("filter", equalTo("id==urn:vcloud:vm:75aa69b4-8cff-40cd-9338-000000000000"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(IOUtils.toString(new ClassPathResource(
+								"mock-server/vcloud/vcloud-query-vm-poweredoff-deployed.xml").getInputStream(),
+								StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		// A subscription without vCloud parameters
+		final var other = new Subscription();
+		other.setProject(em.find(Subscription.class, subscription).getProject());
+		other.setNode(em.find(Node.class, "service:vm"));
+		em.persist(other);
+		em.flush();
+
+		final var vms = resource.getVmDetails(List.of(other.getId(), subscription));
+		Assertions.assertEquals(1, vms.size());
+		checkVm(vms.get(subscription));
+		Assertions.assertTrue(resource.getVmDetails(List.of(other.getId())).isEmpty());
+	}
+
+	@Test
+	void getVmCacheStatisticsNoRight() throws Exception {
+		prepareMockItem();
+		resource.getVmDetails(subscriptionResource.getParametersNoCheck(subscription));
+		Assertions.assertEquals(1, resource.getVmCacheStatistics().getSize());
+
+		// This user does not see the vCloud node
+		initSpringSecurityContext("any");
+		final var statistics = resource.getVmCacheStatistics();
+		Assertions.assertEquals(0, statistics.getSize());
+		Assertions.assertEquals(0, statistics.getMisses());
+	}
+
 	private void checkVm(final VCloudVm item) {
 		checkItem(item);
 		Assertions.assertEquals("High Performances", item.getStorageProfileName());
@@ -160,6 +660,61 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		checkVm((VCloudVm) nodeStatusWithData.getData().get("vm"));
 	}
 
+	@Test
+	void checkSubscriptionStatusBulk() throws Exception {
+		prepareMockItem();
+		final var schedule = new VmSchedule();
+		schedule.setCron("0 0 0 1 1 ? 2050");
+		schedule.setOperation(VmOperation.OFF);
+		schedule.setSubscription(em.find(Subscription.class, subscription));
+		em.persist(schedule);
+		em.flush();
+
+		final var statuses = resource.checkSubscriptionStatus("service:vm:vcloud:obs-fca-info",
+				List.of(subscription, subscription));
+		Assertions.assertEquals(1, statuses.size());
+		final var status = statuses.get(subscription);
+		Assertions.assertTrue(status.getStatus().isUp());
+		checkVm((VCloudVm) status.getData().get("vm"));
+		Assertions.assertEquals(1, status.getData().get("schedules"));
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void checkSubscriptionStatusBulkOtherNode() {
+		Assertions.assertTrue(resource.checkSubscriptionStatus("service:vm:vcloud:other", List.of(subscription))
+				.isEmpty());
+		Assertions.assertTrue(resource.checkSubscriptionStatus("service:vm:vcloud", List.of(subscription)).isEmpty());
+		Assertions.assertTrue(resource.checkSubscriptionStatus("service:vm:vcloud:obs-fca-info", List.of()).isEmpty());
+	}
+
+	@Test
+	void checkSubscriptionStatusBulkNotVisibleProject() throws IOException {
+		prepareMockItem();
+
+		// This user sees the node, but not the project of the subscription
+		final var delegate = new DelegateNode();
+		delegate.setNode("service:vm:vcloud:obs-fca-info");
+		delegate.setReceiver("any");
+		delegate.setReceiverType(ReceiverType.USER);
+		em.persist(delegate);
+		em.flush();
+		initSpringSecurityContext("any");
+		Assertions.assertTrue(
+				resource.checkSubscriptionStatus("service:vm:vcloud:obs-fca-info", List.of(subscription)).isEmpty());
+		httpServer.verify(0, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void checkSubscriptionStatusBulkNotFound() {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<a/>")));
+		httpServer.start();
+		Assertions.assertTrue(
+				resource.checkSubscriptionStatus("service:vm:vcloud:obs-fca-info", List.of(subscription)).isEmpty());
+	}
+
 	private void prepareMockItem() throws IOException {
 		prepareMockHome();
 
@@ -190,6 +745,59 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		Assertions.assertTrue(resource.checkStatus(subscriptionResource.getParametersNoCheck(subscription)));
 	}
 
+	@Test
+	void checkStatusProbe() throws Exception {
+		prepareMockVersion();
+		httpServer.stubFor(get(urlPathEqualTo("/api/session")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)));
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		Assertions.assertTrue(resource.checkStatus(parameters));
+
+		// Recently checked
+		Assertions.assertTrue(resource.checkStatus(parameters));
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/admin")));
+		httpServer.verify(0, getRequestedFor(urlPathEqualTo("/api/session")));
+
+		// Expired check, only the session is checked
+		ReflectionTestUtils.setField(resource, "statusTtl", 0L);
+		try {
+			Assertions.assertTrue(resource.checkStatus(parameters));
+			httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/admin")));
+			httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/session")));
+
+			// Invalid session
+			httpServer.stubFor(get(urlPathEqualTo("/api/session"))
+					.willReturn(aResponse().withStatus(HttpStatus.SC_FORBIDDEN)));
+			MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class,
+					() -> resource.checkStatus(parameters)), VCloudPluginResource.PARAMETER_API, "vcloud-login");
+		} finally {
+			ReflectionTestUtils.setField(resource, "statusTtl", 30000L);
+		}
+	}
+
+	@Test
+	void checkStatusProbeOtherPassword() throws Exception {
+		prepareMockVersion();
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		Assertions.assertTrue(resource.checkStatus(parameters));
+
+		// The cached check is not used by the other credentials
+		final var invalid = new HashMap<>(parameters);
+		invalid.put(VCloudPluginResource.PARAMETER_PASSWORD, "invalid");
+		final var authentication = Base64.getEncoder().encodeToString(
+				(invalid.get(VCloudPluginResource.PARAMETER_USER) + "@"
+						+ invalid.get(VCloudPluginResource.PARAMETER_ORGANIZATION) + ":invalid")
+						.getBytes(StandardCharsets.UTF_8));
+		httpServer.stubFor(post(urlPathEqualTo("/api/sessions"))
+				.withHeader("Authorization", equalTo("Basic " + authentication))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_FORBIDDEN)));
+		MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class,
+				() -> resource.checkStatus(invalid)), VCloudPluginResource.PARAMETER_API, "vcloud-login");
+
+		// The valid credentials are still cached
+		Assertions.assertTrue(resource.checkStatus(parameters));
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/admin")));
+	}
+
 	@Test
 	void checkStatusAuthenticationFailed() {
 		httpServer.stubFor(
@@ -216,6 +824,73 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		resource.checkStatus(subscriptionResource.getParametersNoCheck(subscription));
 	}
 
+	@Test
+	void checkStatusUnavailable() {
+		httpServer.stubFor(post(urlPathEqualTo("/api/sessions"))
+				.willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+		httpServer.start();
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+
+		// Each login is tried twice
+		for (var i = 0; i < 2; i++) {
+			MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class,
+					() -> resource.checkStatus(parameters)), VCloudPluginResource.PARAMETER_API, "vcloud-login");
+		}
+
+		// The fifth failure opens the circuit
+		MatcherUtil.assertThrows(
+				Assertions.assertThrows(ValidationJsonException.class, () -> resource.checkStatus(parameters)),
+				VCloudPluginResource.PARAMETER_API, "vcloud-unavailable");
+		Assertions.assertEquals(VCloudCircuitBreaker.State.OPEN, breaker.getState("http://localhost:8120/api"));
+
+		// Fail fast, even for the non-blocking requests
+		final var future = resource.getVmDetailsAsync(parameters);
+		final var e = Assertions.assertThrows(ExecutionException.class, future::get);
+		MatcherUtil.assertThrows((ValidationJsonException) e.getCause(), VCloudPluginResource.PARAMETER_API,
+				"vcloud-unavailable");
+		Assertions.assertTrue(metrics.getRegistry().find(VCloudMetrics.CIRCUIT).tag("state", "OPEN").counter()
+				.count() >= 1);
+	}
+
+	@Test
+	void getVmDetailsThrottledHalfOpen() throws Exception {
+		prepareMockItem();
+		final var parameters = subscriptionResource.getParametersNoCheck(subscription);
+		final var api = "http://localhost:8120/api/query";
+		final var key = VCloudRateLimiter.toKey("http://localhost:8120/api", "FCA-INFO-FCA");
+
+		// Valid session, then an open circuit
+		checkVm(resource.getVmDetails(parameters));
+		for (var i = 0; i < 5; i++) {
+			breaker.acquire(api);
+			breaker.record(api, 0);
+		}
+		Assertions.assertEquals(VCloudCircuitBreaker.State.OPEN, breaker.getState(api));
+		ReflectionTestUtils.setField(breaker, "openDelay", 0L);
+		try {
+			// The requests are throttled while the circuit would accept a trial request
+			for (var i = 0; i < 25; i++) {
+				rateLimiter.reserve(key);
+			}
+			ReflectionTestUtils.setField(rateLimiter, "maxWait", 0L);
+			vmCache.clear();
+			MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class,
+					() -> resource.getVmDetails(parameters)), VCloudPluginResource.PARAMETER_API, "vcloud-throttled");
+			final var e = Assertions.assertThrows(ExecutionException.class,
+					() -> resource.getVmDetailsAsync(parameters).get());
+			MatcherUtil.assertThrows((ValidationJsonException) e.getCause(), VCloudPluginResource.PARAMETER_API,
+					"vcloud-throttled");
+
+			// The trial request is still available, and closes the circuit
+			rateLimiter.clear();
+			checkVm(resource.getVmDetails(parameters));
+			Assertions.assertEquals(VCloudCircuitBreaker.State.CLOSED, breaker.getState(api));
+		} finally {
+			ReflectionTestUtils.setField(breaker, "openDelay", 30000L);
+			ReflectionTestUtils.setField(rateLimiter, "maxWait", 60000L);
+		}
+	}
+
 	@Test
 	void checkStatusNotAdmin() {
 		prepareMockHome();
@@ -258,6 +933,110 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		checkItem(projects.getFirst());
 	}
 
+	@Test
+	void findAllByNameAsync() throws Exception {
+		prepareMockFindAll();
+		httpServer.start();
+
+		final var projects = resource.findAllByNameAsync("service:vm:vcloud:obs-fca-info", "sc").get();
+		Assertions.assertEquals(3, projects.size());
+		checkItem(projects.getFirst());
+	}
+
+	@Test
+	void findAllByNameAsyncNoRight() throws Exception {
+		initSpringSecurityContext("any");
+		Assertions.assertEquals(0, resource.findAllByNameAsync("service:vm:vcloud:obs-fca-info", "sc").get().size());
+	}
+
+	@Test
+	void findAllByNameInventory() throws Exception {
+		prepareMockFindAll();
+		httpServer.start();
+		Assertions.assertEquals(0, resource.getInventoryStatus("service:vm:vcloud:obs-fca-info").getLastSync());
+
+		resource.synchronizeInventory();
+		final var status = resource.getInventoryStatus("service:vm:vcloud:obs-fca-info");
+		Assertions.assertEquals(3, status.getSize());
+		Assertions.assertTrue(status.getLastSync() > 0);
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")));
+
+		// Served from the inventory
+		final var vms = resource.findAllByName("service:vm:vcloud:obs-fca-info", "SC");
+		Assertions.assertEquals(3, vms.size());
+		checkItem(vms.getFirst());
+		Assertions.assertEquals(1, resource.findAllByName("service:vm:vcloud:obs-fca-info", "scm").size());
+		final var response = resource.findAllByName("service:vm:vcloud:obs-fca-info", "sc", 2, 2, false);
+		Assertions.assertEquals("3", response.getHeaderString(VCloudPluginResource.HEADER_TOTAL));
+		@SuppressWarnings("unchecked")
+		final var page = (List<VCloudVm>) response.getEntity();
+		Assertions.assertEquals(1, page.size());
+		Assertions.assertEquals("ssc", page.getFirst().getName());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")));
+	}
+
+	@Test
+	void synchronizeInventoryFailed() {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR)));
+		httpServer.start();
+		resource.synchronizeInventory("service:vm:vcloud:obs-fca-info");
+		Assertions.assertEquals(0, resource.getInventoryStatus("service:vm:vcloud:obs-fca-info").getLastSync());
+	}
+
+	@Test
+	void findAllByNamePaged() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).withQueryParam("page", equalTo("2"))
+				.withQueryParam("pageSize", equalTo("3"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/vcloud-query-search.xml").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.start();
+
+		final var response = resource.findAllByName("service:vm:vcloud:obs-fca-info", "sc", 2, 3, false);
+		Assertions.assertEquals("3", response.getHeaderString(VCloudPluginResource.HEADER_TOTAL));
+		@SuppressWarnings("unchecked")
+		final var vms = (List<VCloudVm>) response.getEntity();
+		Assertions.assertEquals(3, vms.size());
+		checkItem(vms.getFirst());
+	}
+
+	@Test
+	void findAllByNameStream() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).withQueryParam("page", equalTo("1"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(newSearchPage(1,
+						"<VMRecord name=\"sca\" guestOs=\"CentOS 4/5/6/7 (64-bit)\" id=\"urn:vcloud:vm:75aa69b4-8cff-40cd-9338-000000000000\"/>"
+								+ "<VMRecord name=\"scm\" guestOs=\"CentOS\" id=\"urn:vcloud:vm:1\"/>"))));
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).withQueryParam("page", equalTo("2"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(newSearchPage(2, "<VMRecord name=\"ssc\" guestOs=\"CentOS\" id=\"urn:vcloud:vm:2\"/>"))));
+		httpServer.start();
+
+		final var response = resource.findAllByName("service:vm:vcloud:obs-fca-info", "sc", 1, 2, true);
+		Assertions.assertEquals("3", response.getHeaderString(VCloudPluginResource.HEADER_TOTAL));
+		final var output = new ByteArrayOutputStream();
+		((StreamingOutput) response.getEntity()).write(output);
+		final var vms = new ObjectMapper().readTree(output.toByteArray());
+		Assertions.assertEquals(3, vms.size());
+		Assertions.assertEquals("75aa69b4-8cff-40cd-9338-000000000000", vms.get(0).get("id").asText());
+		Assertions.assertEquals("ssc", vms.get(2).get("name").asText());
+	}
+
+	@Test
+	void findAllByNamePagedNoRight() {
+		initSpringSecurityContext("any");
+		final var response = resource.findAllByName("service:vm:vcloud:obs-fca-info", "sc", 1, 10, false);
+		Assertions.assertEquals("0", response.getHeaderString(VCloudPluginResource.HEADER_TOTAL));
+	}
+
+	private String newSearchPage(final int page, final String records) {
+		return "<QueryResultRecords xmlns=\"http://www.vmware.com/vcloud/v1.5\" total=\"3\" pageSize=\"2\" page=\""
+				+ page + "\" name=\"vm\">" + records + "</QueryResultRecords>";
+	}
+
 	@Test
 	void findAllByNameNoRight() throws Exception {
 		prepareMockFindAll();
@@ -308,6 +1087,148 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		Assertions.assertEquals(0, outputStream.toByteArray().length);
 	}
 
+	private void prepareMockConsole() throws IOException {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/screen"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(IOUtils
+						.toByteArray(new ClassPathResource("mock-server/vcloud/vcloud-console.png").getInputStream()))));
+		httpServer.start();
+	}
+
+	private byte[] toBytes(final Response response) throws IOException {
+		final var outputStream = new ByteArrayOutputStream();
+		((StreamingOutput) response.getEntity()).write(outputStream);
+		return outputStream.toByteArray();
+	}
+
+	@Test
+	void getConsoleCached() throws Exception {
+		prepareMockConsole();
+		final var response = resource.getConsole(subscription, 0, null);
+		Assertions.assertEquals(HttpStatus.SC_OK, response.getStatus());
+		final var image = toBytes(response);
+		Assertions.assertArrayEquals(IOUtils.toByteArray(
+				new ClassPathResource("mock-server/vcloud/vcloud-console.png").getInputStream()), image);
+		final var etag = response.getEntityTag().getValue();
+		Assertions.assertTrue(response.getHeaderString("Cache-Control").contains("max-age=5"));
+
+		// Same image from the cache
+		final var cached = resource.getConsole(subscription, 0, "\"other\"");
+		Assertions.assertEquals(HttpStatus.SC_OK, cached.getStatus());
+		Assertions.assertEquals(etag, cached.getEntityTag().getValue());
+		Assertions.assertArrayEquals(image, toBytes(cached));
+
+		// Not modified
+		final var notModified = resource.getConsole(subscription, 0, "\"" + etag + "\"");
+		Assertions.assertEquals(HttpStatus.SC_NOT_MODIFIED, notModified.getStatus());
+		Assertions.assertNull(notModified.getEntity());
+		Assertions.assertEquals(HttpStatus.SC_NOT_MODIFIED,
+				resource.getConsole(subscription, 0, "\"other\", W/\"" + etag + "\"").getStatus());
+
+		// Part of the tag only
+		Assertions.assertEquals(HttpStatus.SC_OK,
+				resource.getConsole(subscription, 0, "\"" + etag.substring(1) + "\"").getStatus());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/screen")));
+	}
+
+	@Test
+	void getConsoleOtherCredentials() throws Exception {
+		prepareMockConsole();
+		final Map<String, String> parameters = new HashMap<>(subscriptionResource.getParametersNoCheck(subscription));
+		final VCloudConsoleCache.Frame frame = ReflectionTestUtils.invokeMethod(resource, "getConsoleFrame", parameters,
+				0);
+		Assertions.assertSame(frame, ReflectionTestUtils.invokeMethod(resource, "getConsoleFrame", parameters, 0));
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/screen")));
+
+		// Not shared with other credentials
+		parameters.put(VCloudPluginResource.PARAMETER_PASSWORD, "other");
+		Assertions.assertNotSame(frame, ReflectionTestUtils.invokeMethod(resource, "getConsoleFrame", parameters, 0));
+		httpServer.verify(2, getRequestedFor(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/screen")));
+	}
+
+	@Test
+	void getConsoleThumbnail() throws Exception {
+		prepareMockConsole();
+		final var response = resource.getConsole(subscription, 100, null);
+		Assertions.assertEquals(HttpStatus.SC_OK, response.getStatus());
+		final var thumbnail = ImageIO.read(new ByteArrayInputStream(toBytes(response)));
+		Assertions.assertEquals(100, thumbnail.getWidth());
+		Assertions.assertEquals(54, thumbnail.getHeight());
+		final var etag = response.getEntityTag().getValue();
+		Assertions.assertNotEquals(resource.getConsole(subscription, 0, null).getEntityTag().getValue(), etag);
+
+		// Cached thumbnail, and original screenshot for a larger width
+		Assertions.assertEquals(etag, resource.getConsole(subscription, 100, null).getEntityTag().getValue());
+		Assertions.assertEquals(resource.getConsole(subscription, 0, null).getEntityTag().getValue(),
+				resource.getConsole(subscription, 5000, null).getEntityTag().getValue());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/screen")));
+	}
+
+	@Test
+	void getConsoleStream() throws Exception {
+		prepareMockConsole();
+		ReflectionTestUtils.setField(consoleStreamer, "interval", 20L);
+		ReflectionTestUtils.setField(consoleStreamer, "duration", 300L);
+		try {
+			final var response = resource.getConsoleStream(subscription);
+			Assertions.assertEquals(HttpStatus.SC_OK, response.getStatus());
+			final var stream = new String(toBytes(response), StandardCharsets.ISO_8859_1);
+
+			// Unchanged screen is sent once
+			Assertions.assertTrue(
+					stream.startsWith("--vcloud-console\r\nContent-Type: image/png\r\nContent-Length: 273272\r\n"));
+			Assertions.assertEquals(1, StringUtils.countMatches(stream, "--vcloud-console\r\n"));
+			Assertions.assertTrue(stream.endsWith("--vcloud-console--\r\n"));
+			Assertions.assertTrue(consoleStreamer.getSkipped() > 0);
+			final String scope = ReflectionTestUtils.invokeMethod(resource, "toScope",
+					subscriptionResource.getParametersNoCheck(subscription));
+			Assertions.assertNotNull(consoleCache.get(scope, "75aa69b4-8cff-40cd-9338-000000000000", 0));
+		} finally {
+			ReflectionTestUtils.setField(consoleStreamer, "interval", 1000L);
+			ReflectionTestUtils.setField(consoleStreamer, "duration", 300000L);
+		}
+	}
+
+	@Test
+	void getConsoleStreamScope() throws Exception {
+		prepareMockConsole();
+		final var response = resource.getConsoleStream(subscription);
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			final var viewer = executor.submit(() -> toBytes(response));
+			await(() -> consoleStreamer.getPollers() == 1);
+
+			// The poller is scoped by the credentials of the viewer
+			final String scope = ReflectionTestUtils.invokeMethod(resource, "toScope",
+					subscriptionResource.getParametersNoCheck(subscription));
+			final Map<?, ?> pollers = (Map<?, ?>) ReflectionTestUtils.getField(consoleStreamer, "pollers");
+			Assertions.assertEquals(Set.of(scope + "##75aa69b4-8cff-40cd-9338-000000000000"), pollers.keySet());
+			consoleStreamer.clear();
+			Assertions.assertTrue(new String(viewer.get(10, TimeUnit.SECONDS), StandardCharsets.ISO_8859_1)
+					.endsWith("--vcloud-console--\r\n"));
+		}
+	}
+
+	/**
+	 * Wait for a condition, within a bounded timeout.
+	 */
+	private static void await(final BooleanSupplier condition) throws InterruptedException {
+		final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		Assertions.assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	void getConsoleNoContent() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/screen"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_NO_CONTENT)));
+		httpServer.start();
+		Assertions.assertEquals(HttpStatus.SC_NO_CONTENT, resource.getConsole(subscription, 0, null).getStatus());
+		Assertions.assertEquals(0, consoleCache.size());
+	}
+
 	@Test
 	void execute() throws Exception {
 		httpServer
@@ -322,13 +1243,321 @@ class VCloudPluginResourceTest extends AbstractServerTest {
 		Assertions.assertEquals(VmOperation.ON, execution.getOperation());
 	}
 
-	private VmExecution newExecution(final VmOperation operation) {
+	@Test
+	void executeDispatched() throws Exception {
+		httpServer
+				.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn"))
+						.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<Task>...</Task>")));
+		prepareMockItem();
+		ReflectionTestUtils.setField(dispatcher, "window", 1000L);
+		try {
+			final var execution = newExecution(VmOperation.ON);
+			resource.execute(execution);
+
+			// The execution runs once released, not in the calling thread
+			final var timers = metrics.getRegistry().find(VCloudMetrics.DISPATCH_WAIT).tag("endpoint",
+					"http://localhost:8120");
+			await(() -> timers.timer() != null && timers.timer().count() == 1 && !httpServer.findAll(postRequestedFor(
+					urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn")))
+					.isEmpty());
+			Assertions.assertEquals(VmOperation.ON, execution.getOperation());
+		} finally {
+			ReflectionTestUtils.setField(dispatcher, "window", 0L);
+			dispatcher.clear();
+		}
+	}
+
+	@Test
+	void executeTracked() throws Exception {
+		httpServer
+				.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn"))
+						.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(
+								"<Task xmlns=\"http://www.vmware.com/vcloud/v1.5\" status=\"running\" operationName=\"vappDeploy\" href=\"https://vcloud/api/task/42\"/>")));
+		httpServer.stubFor(get(urlPathEqualTo("/api/task/42")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody("<Task xmlns=\"http://www.vmware.com/vcloud/v1.5\" status=\"error\" operationName=\"vappDeploy\" href=\"https://vcloud/api/task/42\">"
+						+ "<Error message=\"Not enough resources\"/></Task>")));
+		prepareMockItem();
+		final var execution = newExecution(VmOperation.ON);
+		resource.execute(execution);
+		Assertions.assertEquals(VmOperation.ON, execution.getOperation());
+
+		// Wait for the background poll
+		await(() -> execution.getStatusText() != null);
+		Assertions.assertTrue(execution.getStatusText().startsWith("Task vappDeploy error after"));
+		Assertions.assertTrue(execution.getStatusText().endsWith("Not enough resources"));
+		Assertions.assertFalse(execution.isSucceed());
+	}
+
+	@Test
+	void trackBlockingPolls() throws InterruptedException {
+		final var polls = new CountDownLatch(10);
+		final var listened = new CountDownLatch(10);
+		final var virtual = Collections.synchronizedList(new ArrayList<Boolean>());
+		final UnaryOperator<String> poller = href -> {
+			// Each poll waits for the other ones, more than the scheduler threads
+			virtual.add(Thread.currentThread().isVirtual());
+			polls.countDown();
+			try {
+				polls.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "<Task status=\"success\" operationName=\"powerOn\" href=\"" + href + "\"/>";
+		};
+		for (var i = 0; i < 10; i++) {
+			final var task = "<Task status=\"running\" operationName=\"powerOn\" href=\"https://vcloud/api/task/" + i
+					+ "\"/>";
+			tracker.track(new VmExecution(), task, poller, t -> listened.countDown());
+		}
+		Assertions.assertTrue(listened.await(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, polls.getCount());
+		Assertions.assertEquals(Collections.nCopies(10, true), virtual);
+	}
+
+	@Test
+	void toTask() {
+		Assertions.assertNull(VCloudTaskTracker.toTask(null));
+		Assertions.assertNull(VCloudTaskTracker.toTask("<Task>...</Task>"));
+		Assertions.assertNull(VCloudTaskTracker.toTask("<Task"));
+		final var task = VCloudTaskTracker.toTask("<Task status=\"success\" operationName=\"vappUndeployPowerOff\" href=\"https://vcloud/api/task/42\"/>");
+		Assertions.assertEquals("https://vcloud/api/task/42", task.getHref());
+		Assertions.assertEquals("vappUndeployPowerOff", task.getOperation());
+		Assertions.assertTrue(task.isSucceed());
+		Assertions.assertFalse(task.isRunning());
+	}
+
+	@Test
+	void executeBulk() throws Exception {
+		httpServer
+				.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn"))
+						.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<Task>...</Task>")));
+		prepareMockItem();
+		final var report = resource.execute(List.of(newExecution(VmOperation.ON), newExecution(VmOperation.OFF),
+				newExecution(VmOperation.RESTART)));
+
+		Assertions.assertEquals(0, report.getFailed());
+		Assertions.assertEquals(3, report.getResults().size());
+		final var on = report.getResults().get(0);
+		Assertions.assertEquals(subscription, on.getSubscription());
+		Assertions.assertEquals("sca", on.getVm());
+		Assertions.assertEquals(VmOperation.ON, on.getRequested());
+		Assertions.assertEquals(VmOperation.ON, on.getExecuted());
+		Assertions.assertTrue(on.isSucceed());
+		Assertions.assertNull(on.getError());
+
+		// Useless operation
+		final var off = report.getResults().get(1);
+		Assertions.assertEquals(VmOperation.OFF, off.getRequested());
+		Assertions.assertNull(off.getExecuted());
+		Assertions.assertTrue(off.isSucceed());
+		Assertions.assertEquals(VmOperation.ON, report.getResults().get(2).getExecuted());
+	}
+
+	@Test
+	void executeBulkFailed() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredon.xml").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/action/undeploy"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_BAD_REQUEST).withBody("<Error>...</Error>")));
+		httpServer.start();
+		final var report = resource.execute(List.of(newExecution(VmOperation.OFF)));
+
+		Assertions.assertEquals(1, report.getFailed());
+		final var result = report.getResults().get(0);
+		Assertions.assertFalse(result.isSucceed());
+		Assertions.assertNull(result.getExecuted());
+		Assertions.assertEquals("vm-operation-execute", result.getError());
+	}
+
+	/**
+	 * Create a subscription to another VM of the same vApp, and stub the queries of both VMs and of the vApp.
+	 *
+	 * @param others The amount of VMs of the vApp not targeted by the executions.
+	 * @return The new subscription.
+	 */
+	private int prepareMockVApp(final int others) throws IOException {
+		final var existing = subscriptionRepository.findOneExpected(subscription);
+		final var other = new Subscription();
+		other.setProject(existing.getProject());
+		other.setNode(existing.getNode());
+		em.persist(other);
+		final var value = new ParameterValue();
+		value.setParameter(em.find(Parameter.class, VCloudPluginResource.PARAMETER_VM));
+		value.setSubscription(other);
+		value.setData("75aa69b4-8cff-40cd-9338-000000000001");
+		em.persist(value);
+		em.flush();
+
+		prepareMockHome();
+		final var vm1 = IOUtils.toString(
+				new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredon.xml").getInputStream(),
+				StandardCharsets.UTF_8);
+		final var vm2 = vm1.replace("-000000000000", "-000000000001").replace("name=\"sca\"", "name=\"sca2\"");
+		var vApp = vm1.replace("</QueryResultRecords>",
+				"<VMRecord" + StringUtils.substringBetween(vm2, "<VMRecord", "/>") + "/></QueryResultRecords>");
+		for (var i = 0; i < others; i++) {
+			vApp = vApp.replace("</QueryResultRecords>",
+					"<VMRecord" + StringUtils.substringBetween(vm2.replace("-000000000001", "-00000000010" + i),
+							"<VMRecord", "/>") + "/></QueryResultRecords>");
+		}
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.withQueryParam("filter", equalTo("id==urn:vcloud:vm:75aa69b4-8cff-40cd-9338-000000000000"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(vm1)));
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.withQueryParam("filter", equalTo("id==urn:vcloud:vm:75aa69b4-8cff-40cd-9338-000000000001"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody(vm2)));
+		httpServer.stubFor(get(urlPathEqualTo("/api/query"))
+				.withQueryParam("filter", equalTo("container==urn:vcloud:vapp:48b3379b-d130-439d-9559-06bcc525c7b9"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+						.withBody(vApp.replace("total=\"1\"", "total=\"" + (others + 2) + "\""))));
+		httpServer.stubFor(post(urlMatching("/api/vApp/.*/action/undeploy"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<Task>...</Task>")));
+		httpServer.start();
+		return other.getId();
+	}
+
+	private VmExecution newExecution(final int subscription, final VmOperation operation) {
 		final var execution = new VmExecution();
 		execution.setSubscription(subscriptionRepository.findOneExpected(subscription));
 		execution.setOperation(operation);
 		return execution;
 	}
 
+	@Test
+	void executeBulkVApp() throws Exception {
+		final var other = prepareMockVApp(0);
+		final var execution1 = newExecution(VmOperation.OFF);
+		final var execution2 = newExecution(other, VmOperation.OFF);
+		final var report = resource.execute(List.of(execution1, execution2));
+
+		Assertions.assertEquals(0, report.getFailed());
+		Assertions.assertEquals("sca", report.getResults().get(0).getVm());
+		Assertions.assertEquals(VmOperation.OFF, report.getResults().get(0).getExecuted());
+		Assertions.assertEquals(other, report.getResults().get(1).getSubscription());
+		Assertions.assertEquals("sca2", report.getResults().get(1).getVm());
+		Assertions.assertEquals(VmOperation.OFF, report.getResults().get(1).getExecuted());
+		Assertions.assertEquals(VmStatus.POWERED_ON, execution2.getPreviousState());
+
+		// A single vApp action
+		httpServer.verify(1, postRequestedFor(
+				urlPathEqualTo("/api/vApp/vapp-48b3379b-d130-439d-9559-06bcc525c7b9/action/undeploy"))
+				.withRequestBody(containing("<UndeployPowerAction>powerOff</UndeployPowerAction>")));
+		httpServer.verify(0, postRequestedFor(urlMatching("/api/vApp/vm-.*")));
+	}
+
+	@Test
+	void executeBulkVAppPartial() throws Exception {
+		final var other = prepareMockVApp(1);
+		final var report = resource.execute(
+				List.of(newExecution(VmOperation.OFF), newExecution(other, VmOperation.OFF)));
+
+		// Not all the VMs of the vApp are targeted, known from the total of the first page
+		Assertions.assertEquals(0, report.getFailed());
+		httpServer.verify(1, getRequestedFor(urlPathEqualTo("/api/query")).withQueryParam("filter",
+				equalTo("container==urn:vcloud:vapp:48b3379b-d130-439d-9559-06bcc525c7b9")));
+		httpServer.verify(0, postRequestedFor(urlMatching("/api/vApp/vapp-.*")));
+		httpServer.verify(1, postRequestedFor(
+				urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/action/undeploy")));
+		httpServer.verify(1, postRequestedFor(
+				urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000001/action/undeploy")));
+	}
+
+	@Test
+	void executeBulkVAppPaged() throws Exception {
+		final var other = prepareMockVApp(0);
+		final var vm1 = IOUtils.toString(
+				new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredon.xml").getInputStream(),
+				StandardCharsets.UTF_8);
+		final var vm2 = vm1.replace("-000000000000", "-000000000001").replace("name=\"sca\"", "name=\"sca2\"");
+		final var paging = "total=\"1\" pageSize=\"25\" page=\"1\"";
+		final var container = "container==urn:vcloud:vapp:48b3379b-d130-439d-9559-06bcc525c7b9";
+		for (final var page : new String[] { "1", "2" }) {
+			httpServer.stubFor(get(urlPathEqualTo("/api/query")).withQueryParam("filter", equalTo(container))
+					.withQueryParam("page", equalTo(page)).withQueryParam("pageSize", equalTo("1"))
+					.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody((page.equals("1") ? vm1 : vm2)
+							.replace(paging, "total=\"2\" pageSize=\"1\" page=\"" + page + "\""))));
+		}
+		ReflectionTestUtils.setField(resource, "pageSize", 1);
+		try {
+			final var report = resource.execute(
+					List.of(newExecution(VmOperation.OFF), newExecution(other, VmOperation.OFF)));
+
+			// The members of the vApp are read from both pages
+			Assertions.assertEquals(0, report.getFailed());
+			httpServer.verify(2,
+					getRequestedFor(urlPathEqualTo("/api/query")).withQueryParam("filter", equalTo(container)));
+			httpServer.verify(1, postRequestedFor(
+					urlPathEqualTo("/api/vApp/vapp-48b3379b-d130-439d-9559-06bcc525c7b9/action/undeploy")));
+			httpServer.verify(0, postRequestedFor(urlMatching("/api/vApp/vm-.*")));
+		} finally {
+			ReflectionTestUtils.setField(resource, "pageSize", 128);
+		}
+	}
+
+	@Test
+	void executeBulkVAppDifferentOperation() throws Exception {
+		final var other = prepareMockVApp(0);
+		final var report = resource.execute(
+				List.of(newExecution(VmOperation.OFF), newExecution(other, VmOperation.SHUTDOWN)));
+
+		// Not the same operation
+		Assertions.assertEquals(0, report.getFailed());
+		httpServer.verify(0, postRequestedFor(urlMatching("/api/vApp/vapp-.*")));
+		httpServer.verify(0, getRequestedFor(urlPathEqualTo("/api/query")).withQueryParam("filter",
+				equalTo("container==urn:vcloud:vapp:48b3379b-d130-439d-9559-06bcc525c7b9")));
+		httpServer.verify(2, postRequestedFor(urlMatching("/api/vApp/vm-.*/action/undeploy")));
+	}
+
+	@Test
+	void executeAsync() throws Exception {
+		httpServer
+				.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn"))
+						.willReturn(aResponse().withStatus(HttpStatus.SC_OK).withBody("<Task>...</Task>")));
+		prepareMockItem();
+		final var execution = resource.executeAsync(newExecution(VmOperation.ON)).get();
+
+		// New execution
+		Assertions.assertEquals("sca", execution.getVm());
+		Assertions.assertEquals(VmOperation.ON, execution.getOperation());
+		httpServer.verify(1, postRequestedFor(urlPathEqualTo(
+				"/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/power/action/powerOn")).withHeader("Accept",
+						equalTo(VCloudCurlProcessor.ACCEPT)));
+	}
+
+	@Test
+	void executeAsyncUseless() throws Exception {
+		prepareMockItem();
+		final var execution = resource.executeAsync(newExecution(VmOperation.OFF)).get();
+		Assertions.assertEquals("sca", execution.getVm());
+		httpServer.verify(0, postRequestedFor(urlPathMatching("/api/vApp/.*")));
+	}
+
+	@Test
+	void executeAsyncFailed() throws Exception {
+		prepareMockHome();
+		httpServer.stubFor(get(urlPathEqualTo("/api/query")).willReturn(aResponse().withStatus(HttpStatus.SC_OK)
+				.withBody(IOUtils.toString(
+						new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredon.xml").getInputStream(),
+						StandardCharsets.UTF_8))));
+		httpServer.stubFor(post(urlPathEqualTo("/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/action/undeploy"))
+				.willReturn(aResponse().withStatus(HttpStatus.SC_BAD_REQUEST).withBody("<Error>...</Error>")));
+		httpServer.start();
+		final var future = resource.executeAsync(newExecution(VmOperation.OFF));
+		final var e = Assertions.assertThrows(ExecutionException.class, future::get);
+		Assertions.assertInstanceOf(BusinessException.class, e.getCause());
+		Assertions.assertEquals("vm-operation-execute", e.getCause().getMessage());
+		httpServer.verify(1, postRequestedFor(urlPathEqualTo(
+				"/api/vApp/vm-75aa69b4-8cff-40cd-9338-000000000000/action/undeploy")).withHeader("Content-Type",
+						containing("application/vnd.vmware.vcloud.undeployVAppParams+xml")));
+	}
+
+	private VmExecution newExecution(final VmOperation operation) {
+		return newExecution(subscription, operation);
+	}
+
 	/**
 	 * Shutdown execution requires an undeploy action.
 	 */
@@ -0,0 +1,145 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ligoj.bootstrap.MatcherUtil;
+import org.ligoj.bootstrap.core.validation.ValidationJsonException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+/**
+ * Test class of {@link VCloudRateLimiter}
+ */
+class VCloudRateLimiterTest {
+
+	private static final String KEY = VCloudRateLimiter.toKey("https://vcloud.sample.com:443/api", "org");
+
+	private VCloudRateLimiter limiter;
+
+	private VCloudMetrics metrics;
+
+	@BeforeEach
+	void prepare() {
+		metrics = new VCloudMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		limiter = new VCloudRateLimiter();
+		ReflectionTestUtils.setField(limiter, "limit", 10d);
+		ReflectionTestUtils.setField(limiter, "min", 1d);
+		ReflectionTestUtils.setField(limiter, "maxWait", 2000L);
+		ReflectionTestUtils.setField(limiter, "retries", 3);
+		ReflectionTestUtils.setField(limiter, "metrics", metrics);
+	}
+
+	@Test
+	void toKey() {
+		Assertions.assertEquals("https://vcloud.sample.com:443##org", KEY);
+		Assertions.assertEquals("https://vcloud.sample.com:443##",
+				VCloudRateLimiter.toKey("https://vcloud.sample.com:443/api/sessions", " "));
+	}
+
+	@Test
+	void isThrottled() {
+		Assertions.assertTrue(VCloudRateLimiter.isThrottled(HttpStatus.SC_TOO_MANY_REQUESTS));
+		Assertions.assertTrue(VCloudRateLimiter.isThrottled(HttpStatus.SC_SERVICE_UNAVAILABLE));
+		Assertions.assertFalse(VCloudRateLimiter.isThrottled(HttpStatus.SC_OK));
+		Assertions.assertFalse(VCloudRateLimiter.isThrottled(HttpStatus.SC_BAD_GATEWAY));
+	}
+
+	@Test
+	void toRetryAfter() {
+		Assertions.assertEquals(0, VCloudRateLimiter.toRetryAfter((String) null));
+		Assertions.assertEquals(0, VCloudRateLimiter.toRetryAfter(" "));
+		Assertions.assertEquals(0, VCloudRateLimiter.toRetryAfter("soon"));
+		Assertions.assertEquals(5000, VCloudRateLimiter.toRetryAfter(" 5 "));
+		final var date = DateUtils.formatStandardDate(Instant.now().plusSeconds(30));
+		Assertions.assertTrue(VCloudRateLimiter.toRetryAfter(date) > 20000);
+		Assertions.assertEquals(0, VCloudRateLimiter.toRetryAfter("Thu, 01 Jan 1970 00:00:00 GMT"));
+	}
+
+	@Test
+	void reserve() {
+		// Burst within the rate
+		for (var i = 0; i < 10; i++) {
+			Assertions.assertEquals(0, limiter.reserve(KEY));
+		}
+
+		// Queued requests are spaced
+		final var wait = limiter.reserve(KEY);
+		Assertions.assertTrue(wait > 0 && wait <= 100);
+		Assertions.assertTrue(limiter.reserve(KEY) > wait);
+	}
+
+	@Test
+	void reserveTooLong() {
+		ReflectionTestUtils.setField(limiter, "maxWait", 0L);
+		for (var i = 0; i < 10; i++) {
+			limiter.reserve(KEY);
+		}
+		MatcherUtil.assertThrows(Assertions.assertThrows(ValidationJsonException.class, () -> limiter.reserve(KEY)),
+				VCloudPluginResource.PARAMETER_API, "vcloud-throttled");
+	}
+
+	@Test
+	void throttled() {
+		limiter.reserve(KEY);
+		limiter.record(KEY, HttpStatus.SC_TOO_MANY_REQUESTS, 1000);
+		Assertions.assertEquals(5, limiter.getRate(KEY));
+
+		// Wait for the "Retry-After" delay
+		Assertions.assertTrue(limiter.reserve(KEY) > 800);
+		Assertions.assertEquals(1, metrics.getRegistry().find(VCloudMetrics.THROTTLE)
+				.tag("endpoint", "https://vcloud.sample.com:443").counter().count());
+
+		// Minimal rate
+		limiter.record(KEY, HttpStatus.SC_SERVICE_UNAVAILABLE, 0);
+		limiter.record(KEY, HttpStatus.SC_SERVICE_UNAVAILABLE, 0);
+		limiter.record(KEY, HttpStatus.SC_SERVICE_UNAVAILABLE, 0);
+		Assertions.assertEquals(1, limiter.getRate(KEY));
+
+		// Additive increase
+		limiter.record(KEY, HttpStatus.SC_OK, 0);
+		Assertions.assertEquals(2, limiter.getRate(KEY));
+		limiter.record(KEY, HttpStatus.SC_OK, 0);
+		Assertions.assertEquals(2.5, limiter.getRate(KEY));
+
+		// No response
+		limiter.record(KEY, 0, 0);
+		Assertions.assertEquals(2.5, limiter.getRate(KEY));
+	}
+
+	@Test
+	void acquire() {
+		ReflectionTestUtils.setField(limiter, "limit", 100d);
+		final var start = System.currentTimeMillis();
+		for (var i = 0; i < 110; i++) {
+			limiter.acquire(KEY);
+		}
+		Assertions.assertTrue(System.currentTimeMillis() - start >= 90);
+	}
+
+	@Test
+	void disabled() {
+		ReflectionTestUtils.setField(limiter, "limit", 0d);
+		for (var i = 0; i < 100; i++) {
+			Assertions.assertEquals(0, limiter.reserve(KEY));
+		}
+		limiter.record(KEY, HttpStatus.SC_TOO_MANY_REQUESTS, 1000);
+		Assertions.assertEquals(0, limiter.reserve(KEY));
+	}
+
+	@Test
+	void clear() {
+		limiter.reserve(KEY);
+		limiter.record(KEY, HttpStatus.SC_TOO_MANY_REQUESTS, 0);
+		limiter.clear();
+		Assertions.assertEquals(10, limiter.getRate(KEY));
+	}
+}
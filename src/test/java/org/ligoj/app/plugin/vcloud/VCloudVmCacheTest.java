@@ -0,0 +1,118 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Test class of {@link VCloudVmCache}
+ */
+class VCloudVmCacheTest {
+
+	private static final String API = "https://vcloud.sample.com/api";
+
+	private static final String SCOPE = API + "##credentials";
+
+	private VCloudVmCache cache;
+
+	@BeforeEach
+	void prepare() {
+		cache = new VCloudVmCache();
+		ReflectionTestUtils.setField(cache, "ttl", 5000L);
+		ReflectionTestUtils.setField(cache, "maxSize", 2);
+	}
+
+	private VCloudVm newVm(final String id) {
+		final var vm = new VCloudVm();
+		vm.setId(id);
+		return vm;
+	}
+
+	@Test
+	void put() {
+		final var vm = newVm("vm");
+		cache.put(SCOPE, vm, cache.begin());
+		Assertions.assertSame(vm, cache.get(SCOPE, "vm"));
+		Assertions.assertNull(cache.get(API + "##other", "vm"));
+		Assertions.assertEquals(1, cache.getStatistics().getHits());
+		Assertions.assertEquals(1, cache.getStatistics().getMisses());
+	}
+
+	@Test
+	void putBusy() {
+		cache.put(SCOPE, newVm("vm"), cache.begin());
+		final var busy = newVm("vm");
+		busy.setBusy(true);
+		cache.put(SCOPE, busy, cache.begin());
+		Assertions.assertNull(cache.get(SCOPE, "vm"));
+	}
+
+	@Test
+	void putReadBeforeInvalidation() {
+		// A read starts, then the VM is powered on
+		final var since = cache.begin();
+		cache.invalidate(API, "vm");
+
+		// The state read before the invalidation is not cached
+		cache.put(SCOPE, newVm("vm"), since);
+		Assertions.assertNull(cache.get(SCOPE, "vm"));
+
+		// The next reads are cached, and the other VMs are not concerned
+		cache.put(SCOPE, newVm("vm"), cache.begin());
+		Assertions.assertNotNull(cache.get(SCOPE, "vm"));
+		cache.put(SCOPE, newVm("other"), since);
+		Assertions.assertNotNull(cache.get(SCOPE, "other"));
+	}
+
+	@Test
+	void getLoader() {
+		final var vm = newVm("vm");
+		Assertions.assertSame(vm, cache.get(SCOPE, "vm", () -> {
+			// Invalidated while being read
+			cache.invalidate("vm");
+			return vm;
+		}));
+		Assertions.assertNull(cache.get(SCOPE, "vm"));
+		Assertions.assertSame(vm, cache.get(SCOPE, "vm", () -> vm));
+		Assertions.assertSame(vm, cache.get(SCOPE, "vm"));
+	}
+
+	@Test
+	void invalidate() {
+		cache.put(SCOPE, newVm("vm"), cache.begin());
+		cache.put(API + "##other", newVm("vm"), cache.begin());
+		cache.invalidate("https://vcloud.sample.com/api2", "vm");
+		Assertions.assertEquals(2, cache.getStatistics().getSize());
+
+		// All the credentials of this API
+		cache.invalidate(API, "vm");
+		Assertions.assertEquals(0, cache.getStatistics().getSize());
+
+		// Whatever the API
+		cache.put(SCOPE, newVm("vm"), cache.begin());
+		cache.invalidate("vm");
+		Assertions.assertNull(cache.get(SCOPE, "vm"));
+	}
+
+	@Test
+	void evict() {
+		cache.put(SCOPE, newVm("vm1"), cache.begin());
+		cache.put(SCOPE, newVm("vm2"), cache.begin());
+		cache.put(SCOPE, newVm("vm3"), cache.begin());
+		Assertions.assertNull(cache.get(SCOPE, "vm1"));
+		Assertions.assertEquals(1, cache.getStatistics().getEvictions());
+		cache.clear();
+		Assertions.assertEquals(0, cache.getStatistics().getSize());
+	}
+
+	@Test
+	void disabled() {
+		ReflectionTestUtils.setField(cache, "ttl", 0L);
+		cache.put(SCOPE, newVm("vm"), cache.begin());
+		Assertions.assertNull(cache.get(SCOPE, "vm"));
+	}
+}
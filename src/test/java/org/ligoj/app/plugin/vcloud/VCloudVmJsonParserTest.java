@@ -0,0 +1,103 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Test class of {@link VCloudVmJsonParser}
+ */
+class VCloudVmJsonParserTest {
+
+	@Test
+	void isJson() {
+		Assertions.assertTrue(
+				VCloudVmJsonParser.isJson("application/vnd.vmware.vcloud.query.records+json;version=33.0"));
+		Assertions.assertFalse(VCloudVmJsonParser.isJson("application/vnd.vmware.vcloud.query.records+xml"));
+		Assertions.assertFalse(VCloudVmJsonParser.isJson(null));
+	}
+
+	@Test
+	void toVmsSameAsXml() throws IOException {
+		final var expected = VCloudVmParser
+				.toVms(new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredoff.xml").getInputStream());
+		final var vms = new ArrayList<VCloudVm>();
+		final var page = VCloudVmJsonParser.parse(
+				new ClassPathResource("mock-server/vcloud/vcloud-query-vm-poweredoff.json").getInputStream(),
+				vms::add);
+		Assertions.assertEquals(1, page.getTotal());
+		Assertions.assertEquals(1, page.getPage());
+		Assertions.assertEquals(25, page.getPageSize());
+		Assertions.assertEquals(1, vms.size());
+		final var vm = vms.getFirst();
+		final var xml = expected.getFirst();
+		Assertions.assertEquals(xml.getId(), vm.getId());
+		Assertions.assertEquals(xml.getName(), vm.getName());
+		Assertions.assertEquals(xml.getOs(), vm.getOs());
+		Assertions.assertEquals(xml.getStorageProfileName(), vm.getStorageProfileName());
+		Assertions.assertEquals(xml.getStatus(), vm.getStatus());
+		Assertions.assertEquals(xml.getCpu(), vm.getCpu());
+		Assertions.assertEquals(xml.isBusy(), vm.isBusy());
+		Assertions.assertEquals(xml.getVApp(), vm.getVApp());
+		Assertions.assertEquals(xml.getVAppId(), vm.getVAppId());
+		Assertions.assertEquals(xml.getRam(), vm.getRam());
+		Assertions.assertEquals(xml.isDeployed(), vm.isDeployed());
+	}
+
+	@Test
+	void toVmsGenerated() throws IOException {
+		final var vms = VCloudVmJsonParser.toVms(new ByteArrayInputStream(newQueryResult(100)));
+		Assertions.assertEquals(100, vms.size());
+		Assertions.assertEquals("vm-99", vms.getLast().getName());
+		Assertions.assertEquals(4, vms.getLast().getCpu());
+		Assertions.assertEquals("48b3379b-d130-439d-9559-000000000009", vms.getLast().getVAppId());
+	}
+
+	@Test
+	void toVmsNoRecord() throws IOException {
+		Assertions.assertTrue(VCloudVmJsonParser.toVms(toStream("{}")).isEmpty());
+		Assertions.assertTrue(VCloudVmJsonParser.toVms(toStream("{\"record\":null,\"total\":0}")).isEmpty());
+	}
+
+	@Test
+	void toVmsInvalid() {
+		Assertions.assertThrows(IOException.class, () -> VCloudVmJsonParser.toVms(toStream("[]")));
+		Assertions.assertThrows(IOException.class, () -> VCloudVmJsonParser.toVms(toStream("{\"record\":[{")));
+	}
+
+	/**
+	 * Generate a JSON query result with the given amount of records, equivalent to
+	 * {@link VCloudVmParserTest#newQueryResult(int)}.
+	 */
+	static byte[] newQueryResult(final int count) {
+		final var json = new StringBuilder("{\"otherAttributes\":{},\"link\":[],\"name\":\"vm\",\"page\":1,\"pageSize\":")
+				.append(count).append(",\"total\":").append(count).append(",\"record\":[");
+		for (var i = 0; i < count; i++) {
+			json.append(i == 0 ? "" : ",")
+					.append("{\"_type\":\"QueryResultVMRecordType\",\"otherAttributes\":{},\"link\":[],\"metadata\":null,")
+					.append("\"vdc\":\"urn:vcloud:vdc:d70d5056-ace0-46bf-b69d-caec13a747f7\",\"storageProfileName\":\"")
+					.append(i % 2 == 0 ? "High Performances" : "Standard").append("\",\"status\":\"POWERED_ON\",")
+					.append("\"numberOfCpus\":").append(i % 8 + 1).append(",\"name\":\"vm-").append(i)
+					.append("\",\"memoryMB\":4096,\"isDeployed\":true,\"isBusy\":false,")
+					.append("\"guestOs\":\"CentOS 4/5/6/7 (64-bit)\",\"containerName\":\"vApp_").append(i / 10)
+					.append("\",\"container\":\"urn:vcloud:vapp:48b3379b-d130-439d-9559-")
+					.append(String.format("%012d", i / 10))
+					.append("\",\"id\":\"urn:vcloud:vm:75aa69b4-8cff-40cd-9338-").append(String.format("%012d", i))
+					.append("\",\"taskStatus\":\"success\",\"networkName\":\"INTERNET-ACCESS\"}");
+		}
+		return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private InputStream toStream(final String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+import org.springframework.core.io.ClassPathResource;
+import org.w3c.dom.Element;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class of {@link VCloudVmParser}
+ */
+class VCloudVmParserTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vcloud-query-search.xml", "vcloud-query-vm-busy.xml",
+			"vcloud-query-vm-poweredoff-deployed.xml", "vcloud-query-vm-poweredoff.xml",
+			"vcloud-query-vm-poweredon.xml", "vcloud-query-vm-suspended.xml" })
+	void toVmsSameAsDom(final String file) throws Exception {
+		final var xml = IOUtils.toByteArray(new ClassPathResource("mock-server/vcloud/" + file).getInputStream());
+		final var expected = toVmsDom(new ByteArrayInputStream(xml));
+		final var vms = VCloudVmParser.toVms(new ByteArrayInputStream(xml));
+		Assertions.assertFalse(vms.isEmpty());
+		Assertions.assertEquals(expected.size(), vms.size());
+		for (var i = 0; i < vms.size(); i++) {
+			assertEquals(expected.get(i), vms.get(i));
+		}
+	}
+
+	@Test
+	void toVmsNoRecord() throws IOException {
+		Assertions.assertTrue(VCloudVmParser.toVms(toStream("<a/>")).isEmpty());
+	}
+
+	@Test
+	void toVmsInvalid() {
+		Assertions.assertThrows(IOException.class, () -> VCloudVmParser.toVms(toStream("<a>")));
+	}
+
+	@Test
+	void toVmsAllocation() throws Exception {
+		final var xml = newQueryResult(5000);
+		final var bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		// Warm up both paths
+		for (var i = 0; i < 3; i++) {
+			Assertions.assertEquals(5000, VCloudVmParser.toVms(new ByteArrayInputStream(xml)).size());
+			Assertions.assertEquals(5000, toVmsDom(new ByteArrayInputStream(xml)).size());
+		}
+
+		var start = bean.getCurrentThreadAllocatedBytes();
+		VCloudVmParser.toVms(new ByteArrayInputStream(xml));
+		final var stax = bean.getCurrentThreadAllocatedBytes() - start;
+
+		start = bean.getCurrentThreadAllocatedBytes();
+		toVmsDom(new ByteArrayInputStream(xml));
+		final var dom = bean.getCurrentThreadAllocatedBytes() - start;
+
+		Assertions.assertTrue(stax < dom, "Streaming allocated " + stax + " bytes, DOM allocated " + dom + " bytes");
+	}
+
+	/**
+	 * Generate a query result with the given amount of records.
+	 */
+	static byte[] newQueryResult(final int count) {
+		final var xml = new StringBuilder(
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?><QueryResultRecords xmlns=\"http://www.vmware.com/vcloud/v1.5\" total=\"")
+				.append(count).append("\" pageSize=\"").append(count).append("\" page=\"1\" name=\"vm\">");
+		for (var i = 0; i < count; i++) {
+			xml.append("<VMRecord vdc=\"urn:vcloud:vdc:d70d5056-ace0-46bf-b69d-caec13a747f7\" storageProfileName=\"")
+					.append(i % 2 == 0 ? "High Performances" : "Standard").append("\" status=\"POWERED_ON\" ")
+					.append("numberOfCpus=\"").append(i % 8 + 1).append("\" name=\"vm-").append(i)
+					.append("\" memoryMB=\"4096\" isDeployed=\"true\" isBusy=\"false\" ")
+					.append("guestOs=\"CentOS 4/5/6/7 (64-bit)\" containerName=\"vApp_").append(i / 10)
+					.append("\" container=\"urn:vcloud:vapp:48b3379b-d130-439d-9559-")
+					.append(String.format("%012d", i / 10))
+					.append("\" id=\"urn:vcloud:vm:75aa69b4-8cff-40cd-9338-").append(String.format("%012d", i))
+					.append("\" taskStatus=\"success\" networkName=\"INTERNET-ACCESS\"/>");
+		}
+		return xml.append("</QueryResultRecords>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private InputStream toStream(final String xml) {
+		return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void assertEquals(final VCloudVm expected, final VCloudVm vm) {
+		Assertions.assertEquals(expected.getId(), vm.getId());
+		Assertions.assertEquals(expected.getName(), vm.getName());
+		Assertions.assertEquals(expected.getOs(), vm.getOs());
+		Assertions.assertEquals(expected.getStorageProfileName(), vm.getStorageProfileName());
+		Assertions.assertEquals(expected.getStatus(), vm.getStatus());
+		Assertions.assertEquals(expected.getCpu(), vm.getCpu());
+		Assertions.assertEquals(expected.isBusy(), vm.isBusy());
+		Assertions.assertEquals(expected.getVApp(), vm.getVApp());
+		Assertions.assertEquals(expected.getVAppId(), vm.getVAppId());
+		Assertions.assertEquals(expected.getRam(), vm.getRam());
+		Assertions.assertEquals(expected.isDeployed(), vm.isDeployed());
+	}
+
+	/**
+	 * Previous DOM based implementation: the whole response is read as a string, then parsed as a document.
+	 */
+	static List<VCloudVm> toVmsDom(final InputStream input) throws Exception {
+		final var factory = DocumentBuilderFactory.newInstance();
+		factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		final var asString = IOUtils.toString(input, StandardCharsets.UTF_8);
+		final var tags = factory.newDocumentBuilder()
+				.parse(new ByteArrayInputStream(asString.getBytes(StandardCharsets.UTF_8)))
+				.getElementsByTagName("VMRecord");
+		final var result = new ArrayList<VCloudVm>();
+		for (var i = 0; i < tags.getLength(); i++) {
+			final var record = (Element) tags.item(i);
+			final var vm = new VCloudVm();
+			vm.setId(Strings.CS.removeStart(record.getAttribute("id"), "urn:vcloud:vm:"));
+			vm.setName(record.getAttribute("name"));
+			vm.setOs(record.getAttribute("guestOs"));
+			vm.setStorageProfileName(record.getAttribute("storageProfileName"));
+			vm.setStatus(EnumUtils.getEnum(VmStatus.class, record.getAttribute("status")));
+			vm.setCpu(NumberUtils.toInt(StringUtils.trimToNull(record.getAttribute("numberOfCpus"))));
+			vm.setBusy(Boolean.parseBoolean(
+					ObjectUtils.getIfNull(StringUtils.trimToNull(record.getAttribute("isBusy")), "false")));
+			vm.setVApp(StringUtils.trimToNull(record.getAttribute("containerName")));
+			vm.setVAppId(StringUtils
+					.trimToNull(Strings.CS.removeStart(record.getAttribute("container"), "urn:vcloud:vapp:")));
+			vm.setRam(NumberUtils.toInt(StringUtils.trimToNull(record.getAttribute("memoryMB"))));
+			vm.setDeployed(Boolean.parseBoolean(
+					ObjectUtils.getIfNull(StringUtils.trimToNull(record.getAttribute("isDeployed")), "false")));
+			result.add(vm);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under MIT (https://github.com/ligoj/ligoj/blob/master/LICENSE)
+ */
+package org.ligoj.app.plugin.vcloud;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.ligoj.app.plugin.vm.model.VmStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Test class of {@link VCloudVmStore}
+ */
+class VCloudVmStoreTest {
+
+	@Test
+	void get() throws IOException {
+		final var vms = VCloudVmParser.toVms(new ByteArrayInputStream(VCloudVmParserTest.newQueryResult(100)));
+		vms.get(3).setStatus(VmStatus.SUSPENDED);
+		vms.get(3).setBusy(true);
+		vms.get(3).setDeployed(false);
+		final var store = new VCloudVmStore(vms);
+		Assertions.assertEquals(100, store.size());
+
+		// 2 storage profiles, 1 OS, 10 vApp names and 10 vApp identifiers
+		Assertions.assertEquals(23, store.getDictionarySize());
+		for (var i = 0; i < vms.size(); i++) {
+			final var expected = vms.get(i);
+			final var vm = store.get(i);
+			Assertions.assertNotSame(expected, vm);
+			Assertions.assertEquals(expected.getId(), vm.getId());
+			Assertions.assertEquals(expected.getName(), vm.getName());
+			Assertions.assertEquals(expected.getOs(), vm.getOs());
+			Assertions.assertEquals(expected.getStorageProfileName(), vm.getStorageProfileName());
+			Assertions.assertEquals(expected.getStatus(), vm.getStatus());
+			Assertions.assertEquals(expected.getCpu(), vm.getCpu());
+			Assertions.assertEquals(expected.getRam(), vm.getRam());
+			Assertions.assertEquals(expected.isBusy(), vm.isBusy());
+			Assertions.assertEquals(expected.isDeployed(), vm.isDeployed());
+			Assertions.assertEquals(expected.getVApp(), vm.getVApp());
+			Assertions.assertEquals(expected.getVAppId(), vm.getVAppId());
+		}
+		Assertions.assertEquals(100, store.stream().count());
+		Assertions.assertEquals("vm-99", store.stream().toList().getLast().getName());
+	}
+
+	@Test
+	void getEmpty() {
+		final var store = new VCloudVmStore(List.of(new VCloudVm()));
+		final var vm = store.get(0);
+		Assertions.assertNull(vm.getId());
+		Assertions.assertNull(vm.getName());
+		Assertions.assertNull(vm.getOs());
+		Assertions.assertNull(vm.getStorageProfileName());
+		Assertions.assertNull(vm.getStatus());
+		Assertions.assertNull(vm.getVApp());
+		Assertions.assertNull(vm.getVAppId());
+		Assertions.assertEquals(0, vm.getCpu());
+		Assertions.assertFalse(vm.isBusy());
+		Assertions.assertEquals(0, store.getDictionarySize());
+	}
+
+	@Test
+	void setStatus() {
+		final var vm = new VCloudVm();
+		vm.setStatus(VmStatus.POWERED_OFF);
+		vm.setBusy(true);
+		final var store = new VCloudVmStore(List.of(vm));
+		store.setStatus(0, VmStatus.POWERED_ON, true);
+		Assertions.assertEquals(VmStatus.POWERED_ON, store.get(0).getStatus());
+		Assertions.assertTrue(store.get(0).isDeployed());
+		Assertions.assertFalse(store.get(0).isBusy());
+		store.setStatus(0, null, false);
+		Assertions.assertNull(store.get(0).getStatus());
+		Assertions.assertFalse(store.get(0).isDeployed());
+	}
+
+	@Test
+	void indexOfSorted() {
+		final var vms = new ArrayList<VCloudVm>();
+		for (var i = 0; i < 1000; i++) {
+			final var vm = new VCloudVm();
+			vm.setId(UUID.randomUUID().toString());
+			vms.add(vm);
+		}
+		// Negative most and least significant bits
+		vms.get(10).setId("ffffffff-ffff-ffff-ffff-ffffffffffff");
+		vms.get(11).setId("00000000-0000-0000-8000-000000000000");
+		final var store = new VCloudVmStore(vms);
+		for (var i = 0; i < vms.size(); i++) {
+			Assertions.assertEquals(i, store.indexOf(vms.get(i).getId()));
+		}
+		Assertions.assertEquals(-1, store.indexOf("00000000-0000-0000-0000-000000000000"));
+	}
+
+	@Test
+	void indexOf() {
+		final var vms = new ArrayList<VCloudVm>();
+		for (final var id : new String[] { "75aa69b4-8cff-40cd-9338-000000000000", "vm-1", null,
+				"75AA69B4-8CFF-40CD-9338-000000000001", "75aa69b4-8cff-40cd-9338-000000000001" }) {
+			final var vm = new VCloudVm();
+			vm.setId(id);
+			vms.add(vm);
+		}
+		final var store = new VCloudVmStore(vms);
+		Assertions.assertEquals(0, store.indexOf("75aa69b4-8cff-40cd-9338-000000000000"));
+		Assertions.assertEquals(1, store.indexOf("vm-1"));
+		Assertions.assertEquals(2, store.indexOf(null));
+		Assertions.assertEquals(3, store.indexOf("75AA69B4-8CFF-40CD-9338-000000000001"));
+		Assertions.assertEquals(4, store.indexOf("75aa69b4-8cff-40cd-9338-000000000001"));
+		Assertions.assertEquals(-1, store.indexOf("75aa69b4-8cff-40cd-9338-000000000002"));
+		Assertions.assertEquals(-1, store.indexOf("vm-2"));
+
+		// Non canonical identifiers are kept as is
+		Assertions.assertEquals("75AA69B4-8CFF-40CD-9338-000000000001", store.getId(3));
+		Assertions.assertEquals("vm-1", store.getId(1));
+	}
+}